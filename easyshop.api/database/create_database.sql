@@ -53,7 +53,12 @@ CREATE TABLE products (
     image_url VARCHAR(200),
     stock INT NOT NULL DEFAULT 0,
     featured BOOL NOT NULL DEFAULT 0,
+    -- the name compared byte by byte, which is how products are sorted by name
+    name_binary VARBINARY(400) GENERATED ALWAYS AS (CAST(name AS BINARY)) VIRTUAL,
     PRIMARY KEY (product_id),
+    -- keyset pages seek on (sort column, product_id) and read the index in order
+    INDEX idx_products_price (price, product_id),
+    INDEX idx_products_name (name_binary, product_id),
     FOREIGN KEY (category_id) REFERENCES categories(category_id)
 );
 
@@ -0,0 +1,50 @@
+package org.yearup.configurations;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Adds the tag chosen by {@link CatalogETagInterceptor} to successful catalog responses, just before the body
+ * is written.
+ */
+@ControllerAdvice
+public class CatalogETagAdvice implements ResponseBodyAdvice<Object>
+{
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType)
+    {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response)
+    {
+        if (!(request instanceof ServletServerHttpRequest) || !(response instanceof ServletServerHttpResponse))
+            return body;
+
+        HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+        Object etag = servletRequest.getAttribute(CatalogETagInterceptor.ETAG_ATTRIBUTE);
+        int status = ((ServletServerHttpResponse) response).getServletResponse().getStatus();
+
+        // the attribute survives into the /error dispatch, so the status check is what keeps errors untagged
+        if (etag != null && status < 300)
+        {
+            response.getHeaders().setETag(etag.toString());
+            response.getHeaders().set(HttpHeaders.CACHE_CONTROL,
+                    servletRequest.getAttribute(CatalogETagInterceptor.CACHE_CONTROL_ATTRIBUTE).toString());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,73 @@
+package org.yearup.configurations;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.yearup.data.CatalogVersion;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tags catalog reads with the current {@link CatalogVersion} and answers a matching {@code If-None-Match}
+ * with 304 before the controller runs, so an unchanged catalog costs neither a query nor serialization.
+ *
+ * Every catalog response at a given URL is fully determined by the catalog version, so the version alone is a
+ * strong validator; the client (or any shared cache) already keys what it stores by URL.
+ * The tag is only put on a response by {@link CatalogETagAdvice} once a body is actually written, so error
+ * responses are never stored under it.
+ */
+public class CatalogETagInterceptor implements HandlerInterceptor
+{
+    static final String ETAG_ATTRIBUTE = CatalogETagInterceptor.class.getName() + ".etag";
+    static final String CACHE_CONTROL_ATTRIBUTE = CatalogETagInterceptor.class.getName() + ".cacheControl";
+
+    private final CatalogVersion catalogVersion;
+    private final String cacheControl;
+
+    public CatalogETagInterceptor(CatalogVersion catalogVersion, long maxAgeSeconds)
+    {
+        this.catalogVersion = catalogVersion;
+        this.cacheControl = "public, max-age=" + maxAgeSeconds + ", must-revalidate";
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+    {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod()))
+            return true;
+
+        // read the version before the handler does, so a write that lands mid-request can only make the tag
+        // older than the body, never newer
+        String etag = "\"" + catalogVersion.tag() + "\"";
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag))
+        {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            return false;
+        }
+
+        request.setAttribute(ETAG_ATTRIBUTE, etag);
+        request.setAttribute(CACHE_CONTROL_ATTRIBUTE, cacheControl);
+        return true;
+    }
+
+    // If-None-Match uses weak comparison, so W/"x" matches "x". "*" means "any current representation", which the
+    // interceptor can't know exists (the product may be missing), so it is left for the handler to answer
+    private static boolean matches(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch == null)
+            return false;
+
+        for (String candidate : ifNoneMatch.split(","))
+        {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if (tag.equals(etag))
+                return true;
+        }
+        return false;
+    }
+}
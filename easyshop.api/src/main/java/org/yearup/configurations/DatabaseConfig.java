@@ -26,6 +26,8 @@ public class DatabaseConfig
         basicDataSource.setUrl(url);
         basicDataSource.setUsername(username);
         basicDataSource.setPassword(password);
+        // lets JDBC batches (bulk product import) go over the wire as multi-row INSERTs
+        basicDataSource.addConnectionProperty("rewriteBatchedStatements", "true");
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package org.yearup.configurations;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.yearup.data.CatalogVersion;
+import org.yearup.models.Product;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer
+{
+    private final CatalogVersion catalogVersion;
+    private final long catalogMaxAge;
+
+    @Autowired
+    public WebConfig(CatalogVersion catalogVersion,
+                     @Value("${catalog.http-cache.max-age-seconds:0}") long catalogMaxAge)
+    {
+        this.catalogVersion = catalogVersion;
+        this.catalogMaxAge = catalogMaxAge;
+    }
+
+    // Product carries a @JsonFilter; anything that does not pick the properties to write gets all of them
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer productFieldFilter()
+    {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .addFilter(Product.JSON_FILTER, SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry)
+    {
+        registry.addInterceptor(new CatalogETagInterceptor(catalogVersion, catalogMaxAge))
+                .addPathPatterns("/products", "/products/**", "/categories", "/categories/**",
+                                 "/catalog/**")
+                // admin-only and streamed; must never be stored by a shared cache
+                .excludePathPatterns("/products/export", "/products/import")
+                // ranked by add-to-cart counts, which change without the catalog changing
+                .excludePathPatterns("/products/suggest");
+    }
+}
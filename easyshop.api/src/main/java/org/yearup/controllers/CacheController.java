@@ -0,0 +1,30 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.yearup.data.cache.CachingProductDao;
+import org.yearup.models.CacheStats;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("cache")
+@CrossOrigin
+@PreAuthorize("hasRole('ROLE_ADMIN')")
+public class CacheController
+{
+    private CachingProductDao cachingProductDao;
+
+    @Autowired
+    public CacheController(CachingProductDao cachingProductDao)
+    {
+        this.cachingProductDao = cachingProductDao;
+    }
+
+    @GetMapping("stats")
+    public Map<String, CacheStats> getStats()
+    {
+        return cachingProductDao.getCacheStats();
+    }
+}
@@ -0,0 +1,35 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.yearup.data.CatalogChangeLog;
+import org.yearup.models.CatalogChanges;
+
+@RestController
+@RequestMapping("catalog")
+@CrossOrigin
+public class CatalogController
+{
+    private CatalogChangeLog changeLog;
+
+    @Autowired
+    public CatalogController(CatalogChangeLog changeLog)
+    {
+        this.changeLog = changeLog;
+    }
+
+    // without since, only the current sequence; a new client reads it before loading the full catalog and syncs from there
+    @GetMapping("changes")
+    @PreAuthorize("permitAll()")
+    public CatalogChanges changes(@RequestParam(name = "since", required = false) Long since)
+    {
+        if (since == null)
+            return new CatalogChanges(changeLog.latest());
+        return changeLog.since(since);
+    }
+}
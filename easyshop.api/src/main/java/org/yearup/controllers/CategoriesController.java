@@ -2,15 +2,18 @@ package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.parameters.P;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.CategoryDao;
 import org.yearup.data.ProductDao;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.search.CategorySummaryIndex;
 import org.yearup.models.Category;
-import org.yearup.models.Product;
 
+import java.util.ArrayList;
 import java.util.List;
 
 // add the annotations to make this a REST controller
@@ -20,43 +23,65 @@ import java.util.List;
 
 @RestController
 @RequestMapping("/categories") // Base path for all endpoints in this controller
-@CrossOrigin // Allows cross-origin requests from other domains
+@CrossOrigin(exposedHeaders = ProductPaging.NEXT_CURSOR_HEADER) // Allows cross-origin requests from other domains
 public class CategoriesController {
     private CategoryDao categoryDao;
     private ProductDao productDao;
+    private CategorySummaryIndex summaryIndex;
 
-    @Autowired // Spring injects instances of CategoryDao and ProductDao
-    public CategoriesController(CategoryDao categoryDao, ProductDao productDao) {
+    @Autowired // Spring injects instances of CategoryDao, ProductDao and the summary index
+    public CategoriesController(CategoryDao categoryDao, ProductDao productDao, CategorySummaryIndex summaryIndex) {
         this.categoryDao = categoryDao;
         this.productDao = productDao;
+        this.summaryIndex = summaryIndex;
     }
 
-    @GetMapping // GET /categories - Retrieves all categories
+    @GetMapping // GET /categories - Retrieves all categories, with product summaries once they are indexed
     public List<Category> getAll() {
         try {
-            return categoryDao.getAllCategories();
+            List<Category> categories = new ArrayList<>();
+            for (Category category : categoryDao.getAllCategories()) {
+                categories.add(withSummary(category));
+            }
+            return categories;
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to fetch categories: " + e.getMessage(), e);
         }
     }
 
-    @GetMapping("{id}") // GET /categories/{id} - Retrieves a single category by ID
-    public Category getById(@PathVariable int id) {
+    @GetMapping("{id}") // GET /categories/{id} - Retrieves a single category by ID; ?include=products adds its products
+    public Category getById(@PathVariable int id,
+                            @RequestParam(name = "include", required = false) String include) {
+        if (include != null && !include.equals("products")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown include: " + include + ". Supported: products");
+        }
+
         try {
-            Category category = categoryDao.getById(id);
+            // one joined query instead of a second request to /categories/{id}/products
+            Category category = include == null ? categoryDao.getById(id) : categoryDao.getByIdWithProducts(id);
             if (category == null) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Category with ID: " + id + " not found");
             }
-            return category;
+            return include == null ? withSummary(category) : category;
+        } catch (ResponseStatusException ex) {
+            throw ex;
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to fetch category by ID: " + e.getMessage(), e);
         }
     }
 
     @GetMapping("{categoryId}/products") // GET /categories/{categoryId}/products - Retrieves products by category ID
-    public List<Product> getProductsById(@PathVariable int categoryId) {
+    public ResponseEntity<Object> getProductsById(@PathVariable int categoryId,
+                                                  @RequestParam(name = "limit", required = false) Integer limit,
+                                                  @RequestParam(name = "sort", required = false) String sort,
+                                                  @RequestParam(name = "after", required = false) String after,
+                                                  @RequestParam(name = "fields", required = false) String fields) {
         try {
-            return productDao.listByCategoryId(categoryId);
+            ProductQuery query = new ProductQuery(categoryId, null, null, null);
+            ProductPaging.apply(query, limit, sort, after, fields); // Optional keyset paging, see ProductsController.search
+            return ProductPaging.search(productDao, query);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
         } catch (Exception e) {
             e.printStackTrace();
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to fetch products by category ID:" + e.getMessage(), e);
@@ -92,9 +117,8 @@ public class CategoriesController {
     public void deleteCategory(@PathVariable int id) {
         try {
             // Step 1: Check if there are any products linked to this category
-            // If there are, we should not delete the category
-            List<Product> associatedProducts = productDao.listByCategoryId(id);
-            if (associatedProducts != null && !associatedProducts.isEmpty()) {
+            // If there are, we should not delete the category (a COUNT(*), no need to load them)
+            if (productDao.countByCategoryId(id) > 0) {
                 // If products are found, throw an error to prevent deletion
                 throw new ResponseStatusException(HttpStatus.CONFLICT,
                         "Cannot delete category ID " + id +
@@ -120,4 +144,12 @@ public class CategoriesController {
                     "Failed to delete category: " + e.getMessage(), e);
         }
     }
+
+    // cached categories are shared, so the summary goes on a copy
+    private Category withSummary(Category category) {
+        Category copy = new Category(category.getCategoryId(), category.getName(), category.getDescription());
+        if (summaryIndex.isReady())
+            copy.setSummary(summaryIndex.summary(category.getCategoryId()));
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package org.yearup.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * Shared handling of the limit / sort / after / fields parameters on product listings.
+ * The body stays a plain JSON array; the cursor for the next page travels in a response header.
+ */
+final class ProductPaging
+{
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int MAX_LIMIT = 500;
+
+    private ProductPaging()
+    {
+    }
+
+    static void apply(ProductQuery query, Integer limit, String sort, String after, String fields)
+    {
+        query.setFields(ProductProjection.parse(fields));
+
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT))
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT + ".");
+
+        query.setLimit(limit);
+        if (sort != null && !sort.isBlank())
+        {
+            query.setSort(ProductSort.parse(sort));
+            query.setDescending(sort.startsWith("-"));
+        }
+
+        if (after != null && !after.isBlank())
+        {
+            if (query.isRanked())
+                throw new IllegalArgumentException("Results ranked by relevance can't be paged with a cursor; add a sort to page through them.");
+
+            ProductCursor cursor = ProductCursor.decode(after);
+            if (cursor.getSort() != query.getEffectiveSort() || cursor.isDescending() != query.isDescending())
+                throw new IllegalArgumentException("The cursor was issued for a different sort order.");
+            query.setAfter(cursor);
+        }
+    }
+
+    static ResponseEntity<Object> search(ProductDao productDao, ProductQuery query)
+    {
+        // ranked text searches return the best matches only, so there is no next page
+        if (query.getLimit() == null || query.isRanked())
+            return ResponseEntity.ok(ProductProjection.project(productDao.search(query), query.getFields()));
+
+        // ask for one extra row so we know whether there is a next page without a COUNT query
+        ProductQuery lookahead = query.copy();
+        lookahead.setLimit(query.getLimit() + 1);
+        List<Product> products = productDao.search(lookahead);
+
+        if (products.size() <= query.getLimit())
+            return ResponseEntity.ok(ProductProjection.project(products, query.getFields()));
+
+        List<Product> page = products.subList(0, query.getLimit());
+        Product last = page.get(page.size() - 1);
+        String next = ProductCursor.after(last, query.getEffectiveSort(), query.isDescending()).encode();
+
+        return ResponseEntity.ok()
+                             .header(NEXT_CURSOR_HEADER, next)
+                             .body(ProductProjection.project(page, query.getFields()));
+    }
+}
@@ -0,0 +1,55 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.yearup.data.ProductField;
+import org.yearup.models.Product;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Handling of the {@code fields=} parameter on product endpoints. The DAO only reads the requested columns;
+ * this leaves the properties that were not requested out of the JSON. {@code productId} is always written so
+ * that clients can tell the products apart.
+ */
+final class ProductProjection
+{
+    private ProductProjection()
+    {
+    }
+
+    static Set<ProductField> parse(String fields)
+    {
+        if (fields == null || fields.isBlank())
+            return null;
+        return ProductField.parse(fields);
+    }
+
+    static FilterProvider filters(Set<ProductField> fields)
+    {
+        if (fields == null)
+            return new SimpleFilterProvider().addFilter(Product.JSON_FILTER, SimpleBeanPropertyFilter.serializeAll());
+
+        Set<String> properties = new HashSet<>();
+        properties.add(ProductField.PRODUCT_ID.getProperty());
+        fields.forEach(field -> properties.add(field.getProperty()));
+        return new SimpleFilterProvider().addFilter(Product.JSON_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(properties));
+    }
+
+    /**
+     * Wraps a response body (a product, a list of them, or anything containing products) so that only the
+     * requested product properties are serialized.
+     */
+    static Object project(Object body, Set<ProductField> fields)
+    {
+        if (fields == null)
+            return body;
+
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(filters(fields));
+        return value;
+    }
+}
@@ -1,40 +1,256 @@
 package org.yearup.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.yearup.models.Product;
+import org.yearup.models.ProductBatch;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductImportResult;
+import org.yearup.models.ProductSuggestion;
 import org.yearup.data.ProductDao;
+import org.yearup.data.ProductField;
+import org.yearup.data.ProductImporter;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.search.ProductFacetIndex;
+import org.yearup.data.search.ProductSimilarityIndex;
+import org.yearup.data.search.ProductSuggestIndex;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @RestController
 @RequestMapping("products")
-@CrossOrigin
+@CrossOrigin(exposedHeaders = ProductPaging.NEXT_CURSOR_HEADER)
 public class ProductsController
 {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int MAX_SIMILAR = 50;
+
     private ProductDao productDao;
+    private ProductImporter productImporter;
+    private ObjectMapper objectMapper;
+    private ProductFacetIndex facetIndex;
+    private ProductSuggestIndex suggestIndex;
+    private ProductSimilarityIndex similarityIndex;
+    private int maxBatchSize;
 
     @Autowired
-    public ProductsController(ProductDao productDao)
+    public ProductsController(ProductDao productDao, ProductImporter productImporter, ObjectMapper objectMapper,
+                              ProductFacetIndex facetIndex, ProductSuggestIndex suggestIndex,
+                              ProductSimilarityIndex similarityIndex,
+                              @Value("${products.batch.max-ids:1000}") int maxBatchSize)
     {
         this.productDao = productDao;
+        this.productImporter = productImporter;
+        this.objectMapper = objectMapper;
+        this.facetIndex = facetIndex;
+        this.suggestIndex = suggestIndex;
+        this.similarityIndex = similarityIndex;
+        this.maxBatchSize = maxBatchSize;
     }
 
     @GetMapping("")
     @PreAuthorize("permitAll()")
-    public List<Product> search(@RequestParam(name="cat", required = false) Integer categoryId,
+    public ResponseEntity<Object> search(@RequestParam(name="cat", required = false) Integer categoryId,
                                 @RequestParam(name="minPrice", required = false) BigDecimal minPrice,
                                 @RequestParam(name="maxPrice", required = false) BigDecimal maxPrice,
-                                @RequestParam(name="color", required = false) String color
+                                @RequestParam(name="color", required = false) String color,
+                                @RequestParam(name="q", required = false) String text,
+                                @RequestParam(name="limit", required = false) Integer limit,
+                                @RequestParam(name="sort", required = false) String sort,
+                                @RequestParam(name="after", required = false) String after,
+                                @RequestParam(name="fields", required = false) String fields
                                 )
     {
         try
         {
-            return productDao.search(categoryId, minPrice, maxPrice, color);
+            ProductQuery query = new ProductQuery(categoryId, minPrice, maxPrice, color);
+            // q= is ranked by relevance unless a sort is given
+            query.setText(text == null || text.isBlank() ? null : text);
+            ProductPaging.apply(query, limit, sort, after, fields);
+
+            return ProductPaging.search(productDao, query);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad." + ex.getMessage());
+        }
+    }
+
+    // GET /products/facets?cat=1&color=red - counts per category, color and price band for the filter sidebar
+    @GetMapping("facets")
+    @PreAuthorize("permitAll()")
+    public ProductFacets facets(@RequestParam(name="cat", required = false) Integer categoryId,
+                                @RequestParam(name="minPrice", required = false) BigDecimal minPrice,
+                                @RequestParam(name="maxPrice", required = false) BigDecimal maxPrice,
+                                @RequestParam(name="color", required = false) String color)
+    {
+        // the counts only exist in memory; they are built from the products table at startup
+        if (!facetIndex.isReady())
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Product facets are not available yet.");
+
+        return facetIndex.facets(categoryId, minPrice, maxPrice, color);
+    }
+
+    // GET /products/suggest?prefix=sho - typeahead for the search box, answered from memory on every keystroke
+    @GetMapping("suggest")
+    @PreAuthorize("permitAll()")
+    public List<ProductSuggestion> suggest(@RequestParam(name="prefix") String prefix,
+                                           @RequestParam(name="limit", required = false) Integer limit)
+    {
+        int max = suggestIndex.getTopK();
+        if (limit != null && (limit < 1 || limit > max))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + max + ".");
+
+        return suggestIndex.suggest(prefix, limit == null ? max : limit);
+    }
+
+    // GET /products/export?format=ndjson - streams every matching product as it is read from the database,
+    // either as one JSON array (default) or as newline-delimited JSON
+    @GetMapping("export")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(name="cat", required = false) Integer categoryId,
+                                                        @RequestParam(name="minPrice", required = false) BigDecimal minPrice,
+                                                        @RequestParam(name="maxPrice", required = false) BigDecimal maxPrice,
+                                                        @RequestParam(name="color", required = false) String color,
+                                                        @RequestParam(name="sort", required = false) String sort,
+                                                        @RequestParam(name="fields", required = false) String fields,
+                                                        @RequestParam(name="format", defaultValue = "json") String format)
+    {
+        boolean ndjson = format.equalsIgnoreCase("ndjson");
+        if (!ndjson && !format.equalsIgnoreCase("json"))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be json or ndjson.");
+
+        ProductQuery query = new ProductQuery(categoryId, minPrice, maxPrice, color);
+        try
+        {
+            ProductPaging.apply(query, null, sort, null, fields);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+
+        // flushing is done below in batches, not after every row
+        ObjectWriter writer = objectMapper.writer(ProductProjection.filters(query.getFields()))
+                                          .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream))
+            {
+                generator.setRootValueSeparator(null);
+                if (!ndjson)
+                    generator.writeStartArray();
+
+                int[] written = {0};
+                productDao.stream(query, product -> {
+                    try
+                    {
+                        writer.writeValue(generator, product);
+                        if (ndjson)
+                            generator.writeRaw('\n');
+
+                        // push the first row out right away, then flush in small batches
+                        if (written[0]++ % 100 == 0)
+                            generator.flush();
+                    }
+                    catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                if (!ndjson)
+                    generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok()
+                             .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                             .body(body);
+    }
+
+    // POST /products/batch with a body like [3, 1, 7] - resolves many products in one round trip
+    @PostMapping("batch")
+    @PreAuthorize("permitAll()")
+    public Object getByIds(@RequestBody List<Integer> ids,
+                           @RequestParam(name="fields", required = false) String fields)
+    {
+        return ProductProjection.project(batch(ids), parseFields(fields));
+    }
+
+    // GET /products/batch?ids=3,1,7 - same as above for clients that cannot send a body
+    @GetMapping("batch")
+    @PreAuthorize("permitAll()")
+    public Object getByIdsParam(@RequestParam(name="ids") List<Integer> ids,
+                                @RequestParam(name="fields", required = false) String fields)
+    {
+        return ProductProjection.project(batch(ids), parseFields(fields));
+    }
+
+    // single products and batches come from the entity cache whole; fields= only trims the JSON for them
+    private static Set<ProductField> parseFields(String fields)
+    {
+        try
+        {
+            return ProductProjection.parse(fields);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+    }
+
+    private ProductBatch batch(List<Integer> ids)
+    {
+        if (ids == null || ids.isEmpty())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one product id is required.");
+        if (ids.size() > maxBatchSize)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxBatchSize + " product ids can be requested at once.");
+
+        try
+        {
+            List<Integer> requested = new ArrayList<>(new LinkedHashSet<>(ids));
+            requested.removeIf(Objects::isNull);
+            List<Product> products = productDao.getByIds(requested);
+
+            Set<Integer> foundIds = new HashSet<>();
+            products.forEach(product -> foundIds.add(product.getProductId()));
+            List<Integer> missing = new ArrayList<>();
+            for (Integer id : requested)
+            {
+                if (!foundIds.contains(id))
+                    missing.add(id);
+            }
+
+            return new ProductBatch(products, missing);
         }
         catch(Exception ex)
         {
@@ -44,8 +260,9 @@ public class ProductsController
 
     @GetMapping("{id}")
     @PreAuthorize("permitAll()")
-    public Product getById(@PathVariable int id )
+    public Object getById(@PathVariable int id, @RequestParam(name="fields", required = false) String fields)
     {
+        Set<ProductField> projection = parseFields(fields);
         try
         {
             var product = productDao.getById(id);
@@ -53,7 +270,7 @@ public class ProductsController
             if(product == null)
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND);
 
-            return product;
+            return ProductProjection.project(product, projection);
         }
         catch(Exception ex)
         {
@@ -61,6 +278,37 @@ public class ProductsController
         }
     }
 
+    // GET /products/15/similar - related items for the product detail page
+    @GetMapping("{id}/similar")
+    @PreAuthorize("permitAll()")
+    public Object getSimilar(@PathVariable int id,
+                             @RequestParam(name="limit", defaultValue = "10") int limit,
+                             @RequestParam(name="fields", required = false) String fields)
+    {
+        if (limit < 1 || limit > MAX_SIMILAR)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_SIMILAR + ".");
+        Set<ProductField> projection = parseFields(fields);
+
+        if (!similarityIndex.isReady())
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Similar products are not available yet.");
+
+        List<ProductSimilarityIndex.Match> matches = similarityIndex.similarTo(id, limit);
+        if (matches == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+
+        try
+        {
+            List<Integer> ids = new ArrayList<>(matches.size());
+            matches.forEach(match -> ids.add(match.productId()));
+            // getByIds keeps the order we ask in, which is best match first
+            return ProductProjection.project(productDao.getByIds(ids), projection);
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad." + ex.getMessage());
+        }
+    }
+
     @PostMapping()
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public Product addProduct(@RequestBody Product product)
@@ -76,13 +324,53 @@ public class ProductsController
         }
     }
 
+    // POST /products/import with a text/csv or application/x-ndjson body - bulk loads a supplier catalog
+    @PostMapping("import")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ProductImportResult importProducts(HttpServletRequest request)
+    {
+        String contentType = request.getContentType() == null ? "" : request.getContentType().toLowerCase();
+        Charset charset;
+        try
+        {
+            charset = request.getCharacterEncoding() == null
+                    ? StandardCharsets.UTF_8
+                    : Charset.forName(request.getCharacterEncoding());
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported charset '" + request.getCharacterEncoding() + "'.");
+        }
+
+        try
+        {
+            Reader body = new InputStreamReader(request.getInputStream(), charset);
+
+            if (contentType.contains("csv"))
+                return productImporter.importCsv(body);
+            if (contentType.contains("ndjson") || contentType.contains("jsonl"))
+                return productImporter.importNdjson(body);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            ex.printStackTrace();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad." + ex.getMessage());
+        }
+
+        throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Send text/csv or application/x-ndjson.");
+    }
+
     @PutMapping("{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void updateProduct(@PathVariable int id, @RequestBody Product product)
     {
         try
         {
-            productDao.create(product);
+            productDao.update(id, product);
         }
         catch(Exception ex)
         {
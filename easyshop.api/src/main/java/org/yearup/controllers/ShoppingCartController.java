@@ -11,6 +11,7 @@ import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.ProductDao;
 import org.yearup.data.ShoppingCartDao;
 import org.yearup.data.UserDao;
+import org.yearup.data.search.ProductPopularity;
 import org.yearup.models.Product;
 import org.yearup.models.ShoppingCart;
 import org.yearup.models.ShoppingCartItem;
@@ -37,6 +38,9 @@ public class ShoppingCartController {
     @Autowired
     private ProductDao productDao;
 
+    @Autowired
+    private ProductPopularity productPopularity; // ranks the search box suggestions
+
     // POST: Add a product to the cart
     // Example: POST /cart/products/add?productId=15
     @PostMapping("/add")
@@ -61,6 +65,7 @@ public class ShoppingCartController {
             item.setQuantity(1);
 
             shoppingCartDao.addItemToCart(userId, item);
+            productPopularity.recordAddToCart(productId);
 
             return ResponseEntity.ok("Product added to cart.");
         } catch (Exception e) {
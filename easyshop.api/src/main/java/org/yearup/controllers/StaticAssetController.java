@@ -0,0 +1,481 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerMapping;
+import org.yearup.data.cache.ThumbnailCache;
+import org.yearup.data.cache.TinyLfuCache;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serves the storefront from {@code static.root} (the easyshop.ui folder), so no separate web server is needed:
+ * product images under {@code /images/**} and the rest of the UI under {@code /ui/**}.
+ *
+ * Large files go out through Tomcat's sendfile when the connector supports it; everything else is an ordinary
+ * buffered copy, since a servlet output stream has no zero-copy path. Responses carry a strong ETag made from a hash of the file contents and support
+ * single byte ranges. Text assets are served from a precompressed {@code .br} or {@code .gz} sibling when the
+ * client accepts it and the file exists.
+ *
+ * {@code ?w=} on a product image returns a resized copy from {@link ThumbnailCache}. A copy that is already on disk
+ * is served like any other file; one that still has to be made is answered asynchronously, so the request thread
+ * is not held while the image is resized.
+ *
+ * Product images are never edited in place (a new picture gets a new file name), so they are cached as
+ * immutable. UI files keep their names across releases, so they are revalidated unless the URL carries the
+ * current content hash as {@code ?v=}.
+ */
+@Controller
+@ConditionalOnProperty(name = "static.enabled", havingValue = "true")
+public class StaticAssetController
+{
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, no-cache";
+    private static final String NO_STORE = "no-store";
+    // below this, copying through the response buffer is cheaper than setting up sendfile (Tomcat uses the same)
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private static final int THUMBNAIL_TIMEOUT_SECONDS = 10;
+    private static final int FINGERPRINT_ENTRIES = 10_000;
+
+    private final Path root;
+    private final ThumbnailCache thumbnails;
+    // bounded, so paths that no longer exist (e.g. evicted thumbnails) age out
+    private final TinyLfuCache<Path, Fingerprint> fingerprints = new TinyLfuCache<>(FINGERPRINT_ENTRIES);
+
+    private record Fingerprint(long modified, long size, String etag) { }
+
+    private record Range(long start, long end) { }
+
+    @Autowired
+    public StaticAssetController(@Value("${static.root:../easyshop.ui}") String root, ThumbnailCache thumbnails)
+    {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        this.thumbnails = thumbnails;
+    }
+
+    // GET /images/products/apron.jpg?w=200 - a resized copy for listing tiles
+    // returns null when the response has already been written, or a pending thumbnail
+    @RequestMapping(value = "/images/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public CompletableFuture<ResponseEntity<Resource>> image(HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        Path file = resolve("images/" + remainingPath(request));
+        String width = request.getParameter("w");
+        if (file != null && width != null)
+        {
+            CompletableFuture<Path> thumbnail = thumbnail(file, width);
+            if (!thumbnail.isDone())
+            {
+                // the security headers are written when this thread lets go, and would say no-cache; a 503 or 500
+                // keeps no-store, and only a thumbnail that arrives in time is marked immutable
+                response.setHeader(HttpHeaders.CACHE_CONTROL, NO_STORE);
+                return thumbnail.copy()
+                                .orTimeout(THUMBNAIL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                                .thenApply(path -> {
+                                    ResponseEntity<Resource> ok = thumbnailResponse(path);
+                                    response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+                                    return ok;
+                                })
+                                .exceptionally(error -> {
+                                    throw thumbnailFailure(error);
+                                });
+            }
+            file = thumbnailNow(thumbnail);
+        }
+        serve(file, true, request, response);
+        return null;
+    }
+
+    // index.html links its scripts and styles relatively, so it has to be loaded from /ui/ rather than /ui
+    @RequestMapping(value = "/ui", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void uiRoot(HttpServletResponse response) throws IOException
+    {
+        response.sendRedirect("/ui/");
+    }
+
+    @RequestMapping(value = {"/ui/", "/ui/**"}, method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void ui(HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        String path = remainingPath(request);
+        serve(resolve(path.isEmpty() ? "index.html" : path), false, request, response);
+    }
+
+    private void serve(Path file, boolean immutable, HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        if (file == null)
+        {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String contentType = request.getServletContext().getMimeType(file.getFileName().toString());
+        if (contentType == null)
+            contentType = "application/octet-stream";
+
+        Path body = file;
+        String encoding = null;
+        if (isText(contentType))
+        {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            String accepted = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            for (String candidate : new String[]{"br", "gzip"})
+            {
+                Path variant = accepts(accepted, candidate)
+                        ? contained(file.resolveSibling(file.getFileName() + (candidate.equals("br") ? ".br" : ".gz")))
+                        : null;
+                if (variant != null)
+                {
+                    body = variant;
+                    encoding = candidate;
+                    break;
+                }
+            }
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(body, BasicFileAttributes.class);
+        long length = attributes.size();
+        String etag = fingerprint(body, attributes).etag();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType);
+        if (encoding != null)
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+
+        boolean notModified = new ServletWebRequest(request, response).checkNotModified(etag, attributes.lastModifiedTime().toMillis());
+        Range range = notModified ? null : range(request, etag, length);
+        if (range != null && range.start() >= length)
+        {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        // only once the 416 is ruled out, so a cache doesn't keep the error for a year
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable || isVersioned(request, file) ? IMMUTABLE : REVALIDATE);
+        if (notModified)
+            return;
+
+        long start = 0;
+        long end = length;
+        if (range != null)
+        {
+            start = range.start();
+            end = range.end() + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + range.end() + "/" + length);
+        }
+        response.setContentLengthLong(end - start);
+
+        if (request.getMethod().equals("HEAD"))
+            return;
+
+        // Tomcat writes the file straight from the page cache to the socket once we return
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) && end - start >= SENDFILE_THRESHOLD)
+        {
+            request.setAttribute(SENDFILE_FILENAME, body.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        try (InputStream in = Files.newInputStream(body))
+        {
+            StreamUtils.copyRange(in, response.getOutputStream(), start, end - 1);
+        }
+    }
+
+    private CompletableFuture<Path> thumbnail(Path source, String width)
+    {
+        int pixels;
+        try
+        {
+            pixels = Integer.parseInt(width);
+        }
+        catch (NumberFormatException e)
+        {
+            pixels = -1;
+        }
+        // a fixed set of widths keeps the number of variants (and the work a client can cause) bounded
+        if (!thumbnails.isSupportedWidth(pixels))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "w must be one of " + Arrays.toString(thumbnails.getWidths()) + ".");
+        Path realRoot = realRoot();
+        if (realRoot == null || !source.startsWith(realRoot.resolve("images/products")))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only product images can be resized.");
+
+        try
+        {
+            return thumbnails.thumbnail(source, pixels);
+        }
+        catch (RejectedExecutionException e)
+        {
+            throw busy();
+        }
+        catch (IOException e)
+        {
+            throw thumbnailFailure(e);
+        }
+    }
+
+    // a thumbnail that was already on disk (or has just failed)
+    private static Path thumbnailNow(CompletableFuture<Path> thumbnail)
+    {
+        try
+        {
+            return thumbnail.join();
+        }
+        catch (CompletionException e)
+        {
+            throw thumbnailFailure(e);
+        }
+    }
+
+    // the headers serve() sets, less Cache-Control (see image()); Spring answers If-None-Match and Range for a
+    // Resource body
+    private ResponseEntity<Resource> thumbnailResponse(Path file)
+    {
+        try
+        {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return ResponseEntity.ok()
+                                 .eTag(fingerprint(file, attributes).etag())
+                                 .lastModified(attributes.lastModifiedTime().toMillis())
+                                 .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                                 .contentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                                                              .orElse(MediaType.APPLICATION_OCTET_STREAM))
+                                 .body(new FileSystemResource(file));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ResponseStatusException thumbnailFailure(Throwable error)
+    {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ResponseStatusException statusException)
+            return statusException;
+        if (cause instanceof TimeoutException)
+            return busy();
+
+        cause.printStackTrace();
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+    }
+
+    private static ResponseStatusException busy()
+    {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many images are being resized, try again shortly.");
+    }
+
+    // the part of the URL after /images/ or /ui/
+    private static String remainingPath(HttpServletRequest request)
+    {
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return PATH_MATCHER.extractPathWithinPattern(pattern, path);
+    }
+
+    // null unless the path is a readable, non-hidden file inside the root
+    private Path resolve(String relativePath)
+    {
+        if (relativePath.isEmpty() || relativePath.contains("\0"))
+            return null;
+
+        Path file = root.resolve(relativePath).normalize();
+        if (!file.startsWith(root))
+            return null;
+        return isHidden(root.relativize(file)) ? null : contained(file);
+    }
+
+    // the file with symlinks resolved, or null when it is missing, not a regular file or really lives outside
+    // the root; a link inside the root may point anywhere, so the check has to be made on the real paths
+    private Path contained(Path file)
+    {
+        Path realRoot = realRoot();
+        if (realRoot == null)
+            return null;
+
+        try
+        {
+            Path real = file.toRealPath();
+            if (!real.startsWith(realRoot) || isHidden(realRoot.relativize(real)) || !Files.isRegularFile(real))
+                return null;
+            return real;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    private static boolean isHidden(Path relativePath)
+    {
+        for (Path part : relativePath)
+        {
+            if (part.toString().startsWith("."))
+                return true;
+        }
+        return false;
+    }
+
+    // looked up per request, so a root that is replaced or created after startup is still followed
+    private Path realRoot()
+    {
+        try
+        {
+            return root.toRealPath();
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    private Fingerprint fingerprint(Path file, BasicFileAttributes attributes) throws IOException
+    {
+        long modified = attributes.lastModifiedTime().toMillis();
+        Fingerprint known = fingerprints.getIfPresent(file);
+        if (known != null && known.modified() == modified && known.size() == attributes.size())
+            return known;
+
+        Fingerprint computed = new Fingerprint(modified, attributes.size(), "\"" + hash(file) + "\"");
+        fingerprints.put(file, computed);
+        return computed;
+    }
+
+    private static String hash(Path file) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(file))
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+            {
+                digest.update(buffer, 0, read);
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), 16));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ?v=<hash of the uncompressed file> marks a URL that will never serve different bytes
+    private boolean isVersioned(HttpServletRequest request, Path file) throws IOException
+    {
+        String version = request.getParameter("v");
+        if (version == null)
+            return false;
+        String etag = fingerprint(file, Files.readAttributes(file, BasicFileAttributes.class)).etag();
+        return etag.equals("\"" + version + "\"");
+    }
+
+    /**
+     * A single "bytes=" range, or null to send the whole file. Several ranges, a malformed header or an
+     * If-Range that no longer matches all fall back to the whole file, which is always a valid answer.
+     */
+    private static Range range(HttpServletRequest request, String etag, long length)
+    {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !header.startsWith("bytes=") || header.contains(","))
+            return null;
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag))
+            return null;
+
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return null;
+
+        try
+        {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty())
+            {
+                // "bytes=-500" is the last 500 bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0)
+                    return null;
+                return new Range(Math.max(0, length - suffix), length - 1);
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (end < start && start < length)
+                return null;
+            return new Range(start, end);
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    private static boolean accepts(String acceptEncoding, String encoding)
+    {
+        if (acceptEncoding == null)
+            return false;
+
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(","))
+        {
+            String[] pieces = part.trim().split(";");
+            if (pieces[0].trim().equals(encoding))
+                return pieces.length < 2 || !pieces[1].replace(" ", "").equals("q=0");
+        }
+        return false;
+    }
+
+    private static boolean isText(String contentType)
+    {
+        return contentType.startsWith("text/")
+                || contentType.contains("javascript")
+                || contentType.contains("json")
+                || contentType.contains("xml")
+                || contentType.contains("svg");
+    }
+}
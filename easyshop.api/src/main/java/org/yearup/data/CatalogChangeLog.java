@@ -0,0 +1,121 @@
+package org.yearup.data;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.models.CatalogChanges;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The most recent product and category writes, numbered in the order they happened, for
+ * {@code GET /catalog/changes}.
+ *
+ * Entries live in a ring of {@code catalog.changes.capacity} slots, so the oldest ones are overwritten once it is
+ * full. Sequence numbers start at the process start time in microseconds: they keep growing across restarts,
+ * and a client holding a number from before a restart (or from before the oldest entry still kept) is told to
+ * reload the catalog instead of silently missing writes.
+ */
+@Component
+public class CatalogChangeLog
+{
+    private enum Kind { PRODUCT, CATEGORY }
+
+    private record Entry(Kind kind, int id, Object value) { }
+
+    private final Entry[] ring;
+    // the log is complete for every sequence after this one
+    private long floor;
+    private long latest;
+
+    @Autowired
+    public CatalogChangeLog(@Value("${catalog.changes.capacity:10000}") int capacity)
+    {
+        this.ring = new Entry[capacity];
+        this.latest = System.currentTimeMillis() * 1000;
+        this.floor = latest;
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        append(Kind.PRODUCT, event.getProductId(), event.getProduct());
+    }
+
+    @EventListener
+    public synchronized void onProductsCreated(ProductsCreatedEvent event)
+    {
+        for (Product product : event.getProducts())
+        {
+            append(Kind.PRODUCT, product.getProductId(), product);
+        }
+    }
+
+    @EventListener
+    public void onCategoryChanged(CategoryChangedEvent event)
+    {
+        append(Kind.CATEGORY, event.getCategoryId(), event.getCategory());
+    }
+
+    public synchronized long latest()
+    {
+        return latest;
+    }
+
+    /**
+     * Everything written after sequence {@code since}, one entry per product or category holding its latest
+     * state. When the log no longer reaches back that far the result is empty with {@code reset} set, and the
+     * client should reload the catalog and continue from the returned sequence.
+     */
+    public synchronized CatalogChanges since(long since)
+    {
+        CatalogChanges changes = new CatalogChanges(latest);
+        if (since < floor || since > latest)
+        {
+            changes.setReset(true);
+            return changes;
+        }
+
+        Map<Integer, Product> products = new LinkedHashMap<>();
+        Map<Integer, Category> categories = new LinkedHashMap<>();
+        for (long sequence = since + 1; sequence <= latest; sequence++)
+        {
+            Entry entry = ring[slot(sequence)];
+            if (entry.kind == Kind.PRODUCT)
+                products.put(entry.id, (Product) entry.value);
+            else
+                categories.put(entry.id, (Category) entry.value);
+        }
+
+        products.forEach((id, product) -> {
+            if (product == null)
+                changes.getDeletedProductIds().add(id);
+            else
+                changes.getProducts().add(product);
+        });
+        categories.forEach((id, category) -> {
+            if (category == null)
+                changes.getDeletedCategoryIds().add(id);
+            else
+                changes.getCategories().add(category);
+        });
+        return changes;
+    }
+
+    private synchronized void append(Kind kind, int id, Object value)
+    {
+        long sequence = ++latest;
+        ring[slot(sequence)] = new Entry(kind, id, value);
+        if (sequence - floor > ring.length)
+            floor = sequence - ring.length;
+    }
+
+    private int slot(long sequence)
+    {
+        return (int) Math.floorMod(sequence, (long) ring.length);
+    }
+}
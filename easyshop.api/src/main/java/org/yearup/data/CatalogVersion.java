@@ -0,0 +1,55 @@
+package org.yearup.data;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing counter that every catalog write advances.
+ * Anything derived from catalog data can remember the version it was built at and treat itself as stale once
+ * the current version has moved on.
+ */
+@Component
+public class CatalogVersion
+{
+    private final AtomicLong version = new AtomicLong();
+    // the counter restarts with the process, so tags also carry when this instance started
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    public long current()
+    {
+        return version.get();
+    }
+
+    /**
+     * A token that is unique to this catalog state, suitable as the base of an HTTP entity tag.
+     */
+    public String tag()
+    {
+        return epoch + "." + version.get();
+    }
+
+    public long advance()
+    {
+        return version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        advance();
+    }
+
+    @EventListener
+    public void onProductsCreated(ProductsCreatedEvent event)
+    {
+        advance();
+    }
+
+    @EventListener
+    public void onCategoryChanged(CategoryChangedEvent event)
+    {
+        advance();
+    }
+}
@@ -0,0 +1,37 @@
+package org.yearup.data;
+
+import org.yearup.models.Category;
+
+/**
+ * Published after a category row has been written. For deletes {@link #getCategory()} is {@code null}.
+ */
+public class CategoryChangedEvent
+{
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final int categoryId;
+    private final Category category;
+
+    public CategoryChangedEvent(Type type, int categoryId, Category category)
+    {
+        this.type = type;
+        this.categoryId = categoryId;
+        this.category = category;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public Category getCategory()
+    {
+        return category;
+    }
+}
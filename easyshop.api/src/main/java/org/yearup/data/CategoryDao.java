@@ -8,6 +8,8 @@ public interface CategoryDao
 {
     List<Category> getAllCategories();
     Category getById(int categoryId);
+    // the category with its products (ordered by id) filled in, or null when it doesn't exist
+    Category getByIdWithProducts(int categoryId);
     Category create(Category category);
     void update(int categoryId, Category category);
     void delete(int categoryId);
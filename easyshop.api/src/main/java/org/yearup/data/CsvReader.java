@@ -0,0 +1,100 @@
+package org.yearup.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV one record at a time: quoted fields may contain commas, doubled quotes and line breaks.
+ */
+class CsvReader
+{
+    private final Reader reader;
+    private int pushedBack = -2;
+
+    CsvReader(Reader reader)
+    {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the fields of the next record, or {@code null} at the end of the input
+     * @throws IllegalArgumentException when the input ends inside a quoted field
+     */
+    List<String> readRecord() throws IOException
+    {
+        int c = read();
+        if (c == -1)
+            return null;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true)
+        {
+            if (quoted)
+            {
+                if (c == -1)
+                    throw new IllegalArgumentException("Unterminated quoted field.");
+
+                if (c == '"')
+                {
+                    int next = read();
+                    if (next == '"')
+                    {
+                        field.append('"');
+                    }
+                    else
+                    {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                }
+                else
+                {
+                    field.append((char) c);
+                }
+            }
+            else if (c == '"' && field.length() == 0)
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else if (c == '\r' || c == '\n' || c == -1)
+            {
+                if (c == '\r')
+                {
+                    int next = read();
+                    if (next != '\n')
+                        pushedBack = next;
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+            else
+            {
+                field.append((char) c);
+            }
+
+            c = read();
+        }
+    }
+
+    private int read() throws IOException
+    {
+        if (pushedBack != -2)
+        {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        return reader.read();
+    }
+}
@@ -0,0 +1,37 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+/**
+ * Published after a product row has been written. For deletes {@link #getProduct()} is {@code null}.
+ */
+public class ProductChangedEvent
+{
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final int productId;
+    private final Product product;
+
+    public ProductChangedEvent(Type type, int productId, Product product)
+    {
+        this.type = type;
+        this.productId = productId;
+        this.product = product;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public Product getProduct()
+    {
+        return product;
+    }
+}
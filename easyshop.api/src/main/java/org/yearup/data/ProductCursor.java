@@ -0,0 +1,106 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position of the last product on a page, handed to clients as an opaque token.
+ * It carries the sort it was issued for so it cannot be replayed against a different order.
+ */
+public class ProductCursor
+{
+    private final ProductSort sort;
+    private final boolean descending;
+    private final String lastValue;
+    private final int lastProductId;
+
+    public ProductCursor(ProductSort sort, boolean descending, String lastValue, int lastProductId)
+    {
+        this.sort = sort;
+        this.descending = descending;
+        this.lastValue = lastValue;
+        this.lastProductId = lastProductId;
+    }
+
+    public static ProductCursor after(Product product, ProductSort sort, boolean descending)
+    {
+        return new ProductCursor(sort, descending, sort.valueOf(product), product.getProductId());
+    }
+
+    public ProductSort getSort()
+    {
+        return sort;
+    }
+
+    public boolean isDescending()
+    {
+        return descending;
+    }
+
+    /**
+     * The last product's sort value, or null when it had none.
+     */
+    public String getLastValue()
+    {
+        return lastValue;
+    }
+
+    public int getLastProductId()
+    {
+        return lastProductId;
+    }
+
+    public String encode()
+    {
+        // a null value is left out, which keeps it apart from an empty name
+        String raw = sort.name() + (descending ? "-" : "+") + "|" + lastProductId + (lastValue == null ? "" : "|" + lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token)
+    {
+        try
+        {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            String sortPart = parts[0];
+            ProductSort sort = ProductSort.valueOf(sortPart.substring(0, sortPart.length() - 1));
+            boolean descending = sortPart.endsWith("-");
+            String lastValue = parts.length > 2 ? parts[2] : null;
+            // reject values the keyset predicate could not bind
+            switch (sort)
+            {
+                case PRICE -> { if (lastValue != null) new BigDecimal(lastValue); }
+                case ID -> Integer.parseInt(lastValue);
+                default -> { }
+            }
+            return new ProductCursor(sort, descending, lastValue, Integer.parseInt(parts[1]));
+        }
+        catch (RuntimeException e)
+        {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductCursor that = (ProductCursor) o;
+        return descending == that.descending &&
+                lastProductId == that.lastProductId &&
+                sort == that.sort &&
+                Objects.equals(lastValue, that.lastValue);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(sort, descending, lastValue, lastProductId);
+    }
+}
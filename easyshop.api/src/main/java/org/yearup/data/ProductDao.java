@@ -3,14 +3,28 @@ package org.yearup.data;
 import org.yearup.models.Product;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductDao
 {
-    List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color);
+    List<Product> search(ProductQuery query);
+    default List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        return search(new ProductQuery(categoryId, minPrice, maxPrice, color));
+    }
     List<Product> listByCategoryId(int categoryId);
+    int countByCategoryId(int categoryId);
+    // hands each row to the consumer as it is read, without building a list
+    void stream(ProductQuery query, Consumer<Product> consumer);
     Product getById(int productId);
+    // products that exist, in the order of the (de-duplicated) ids asked for
+    List<Product> getByIds(Collection<Integer> productIds);
     Product create(Product product);
+    // inserts the products in one transaction and sets their generated ids;
+    // returns one entry per product: null when it was inserted, otherwise why it was rejected
+    List<String> createAll(List<Product> products);
     void update(int productId, Product product);
     void delete(int productId);
 }
@@ -0,0 +1,78 @@
+package org.yearup.data;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Product properties that can be requested with {@code fields=}, and the column each one is read from.
+ */
+public enum ProductField
+{
+    PRODUCT_ID("productId", "product_id"),
+    NAME("name", "name"),
+    PRICE("price", "price"),
+    CATEGORY_ID("categoryId", "category_id"),
+    DESCRIPTION("description", "description"),
+    COLOR("color", "color"),
+    STOCK("stock", "stock"),
+    FEATURED("featured", "featured"),
+    IMAGE_URL("imageUrl", "image_url");
+
+    private final String property;
+    private final String column;
+
+    ProductField(String property, String column)
+    {
+        this.property = property;
+        this.column = column;
+    }
+
+    public String getProperty()
+    {
+        return property;
+    }
+
+    public String getColumn()
+    {
+        return column;
+    }
+
+    public static ProductField forSort(ProductSort sort)
+    {
+        return switch (sort)
+        {
+            case ID -> PRODUCT_ID;
+            case PRICE -> PRICE;
+            case NAME -> NAME;
+        };
+    }
+
+    /**
+     * Parses "name,price,imageUrl". Property and column names both work, ignoring case.
+     */
+    public static Set<ProductField> parse(String fields)
+    {
+        Set<ProductField> parsed = EnumSet.noneOf(ProductField.class);
+        for (String name : fields.split(","))
+        {
+            String key = name.trim().replace("_", "").toLowerCase(Locale.ROOT);
+            if (key.isEmpty())
+                continue;
+
+            ProductField match = null;
+            for (ProductField field : values())
+            {
+                if (field.property.toLowerCase(Locale.ROOT).equals(key))
+                    match = field;
+            }
+            if (match == null)
+                throw new IllegalArgumentException("Unknown product field '" + name.trim() + "'.");
+            parsed.add(match);
+        }
+
+        if (parsed.isEmpty())
+            throw new IllegalArgumentException("fields must name at least one product property.");
+        return parsed;
+    }
+}
@@ -0,0 +1,226 @@
+package org.yearup.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Loads products from CSV or NDJSON while the request body is still arriving.
+ * Rows are parsed one at a time and handed to {@link ProductDao#createAll} in fixed-size chunks, each chunk in
+ * its own transaction. A bad row is reported with its row number and never aborts the rest of the load.
+ */
+@Component
+public class ProductImporter
+{
+    private final ProductDao productDao;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    @Autowired
+    public ProductImporter(ProductDao productDao,
+                           ObjectMapper objectMapper,
+                           @Value("${products.import.chunk-size:1000}") int chunkSize)
+    {
+        this.productDao = productDao;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The first record is a header naming the columns, e.g. {@code name,price,category_id,color,stock}.
+     * Column names are matched ignoring case and underscores, so {@code categoryId} works too.
+     */
+    public ProductImportResult importCsv(Reader input) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        ProductImportResult result = new ProductImportResult();
+        Chunk chunk = new Chunk(result);
+
+        CsvReader csv = new CsvReader(new BufferedReader(input));
+        List<String> header = csv.readRecord();
+        if (header == null)
+            return result;
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++)
+        {
+            columns.put(columnKey(header.get(i)), i);
+        }
+        for (String required : new String[]{"name", "price", "categoryid"})
+        {
+            if (!columns.containsKey(required))
+                throw new IllegalArgumentException("The CSV header must contain a '" + required + "' column.");
+        }
+
+        long row = 1;
+        while (true)
+        {
+            row++;
+            List<String> record;
+            try
+            {
+                record = csv.readRecord();
+            }
+            catch (IllegalArgumentException e)
+            {
+                // the open quote swallowed the rest of the input; keep what was loaded before it
+                result.recordFailed(row, e.getMessage());
+                break;
+            }
+            if (record == null)
+                break;
+            if (record.size() == 1 && record.get(0).isBlank())
+                continue;
+
+            try
+            {
+                chunk.add(row, fromCsv(record, columns));
+            }
+            catch (RuntimeException e)
+            {
+                result.recordFailed(row, e.getMessage());
+            }
+        }
+
+        chunk.flush();
+        result.setDurationMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    public ProductImportResult importNdjson(Reader input) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        ProductImportResult result = new ProductImportResult();
+        Chunk chunk = new Chunk(result);
+
+        BufferedReader reader = new BufferedReader(input);
+        long row = 0;
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            row++;
+            if (line.isBlank())
+                continue;
+
+            try
+            {
+                Product product = objectMapper.readValue(line, Product.class);
+                validate(product);
+                chunk.add(row, product);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                result.recordFailed(row, e.getMessage());
+            }
+        }
+
+        chunk.flush();
+        result.setDurationMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private Product fromCsv(List<String> record, Map<String, Integer> columns)
+    {
+        Product product = new Product();
+        product.setName(field(record, columns, "name"));
+        product.setPrice(new BigDecimal(field(record, columns, "price").trim()));
+        product.setCategoryId(Integer.parseInt(field(record, columns, "categoryid").trim()));
+        product.setDescription(field(record, columns, "description"));
+        product.setColor(field(record, columns, "color"));
+        product.setImageUrl(field(record, columns, "imageurl"));
+
+        String stock = field(record, columns, "stock");
+        product.setStock(stock == null || stock.isBlank() ? 0 : Integer.parseInt(stock.trim()));
+
+        String featured = field(record, columns, "featured");
+        product.setFeatured(featured != null && (featured.trim().equals("1") || featured.trim().equalsIgnoreCase("true")));
+
+        validate(product);
+        return product;
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String column)
+    {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size())
+            return null;
+        return record.get(index);
+    }
+
+    private static void validate(Product product)
+    {
+        if (product.getName() == null || product.getName().isBlank())
+            throw new IllegalArgumentException("name is required");
+        if (product.getPrice() == null)
+            throw new IllegalArgumentException("price is required");
+        if (product.getPrice().signum() < 0)
+            throw new IllegalArgumentException("price cannot be negative");
+    }
+
+    private static String columnKey(String header)
+    {
+        return header.trim().replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    // parsed rows waiting to be inserted together
+    private class Chunk
+    {
+        private final ProductImportResult result;
+        private final List<Product> products = new ArrayList<>();
+        private final List<Long> rows = new ArrayList<>();
+
+        Chunk(ProductImportResult result)
+        {
+            this.result = result;
+        }
+
+        void add(long row, Product product)
+        {
+            products.add(product);
+            rows.add(row);
+            if (products.size() >= chunkSize)
+                flush();
+        }
+
+        void flush()
+        {
+            if (products.isEmpty())
+                return;
+
+            try
+            {
+                List<String> errors = productDao.createAll(products);
+                for (int i = 0; i < errors.size(); i++)
+                {
+                    if (errors.get(i) == null)
+                        result.recordImported();
+                    else
+                        result.recordFailed(rows.get(i), errors.get(i));
+                }
+            }
+            catch (RuntimeException e)
+            {
+                for (Long row : rows)
+                {
+                    result.recordFailed(row, e.getMessage());
+                }
+            }
+
+            products.clear();
+            rows.clear();
+        }
+    }
+}
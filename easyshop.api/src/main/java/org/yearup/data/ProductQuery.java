@@ -0,0 +1,271 @@
+package org.yearup.data;
+
+import org.yearup.data.search.SqlValues;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The filters, sort order and page position of a product listing.
+ * Queries are compared by value so they can be used as cache keys.
+ */
+public class ProductQuery
+{
+    private Integer categoryId;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private String color;
+    private String text;
+    private ProductSort sort;
+    private boolean descending;
+    private Integer limit;
+    private ProductCursor after;
+    private Set<ProductField> fields;
+
+    public ProductQuery()
+    {
+    }
+
+    public ProductQuery(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        this.categoryId = categoryId;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.color = color;
+    }
+
+    public Integer getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public void setCategoryId(Integer categoryId)
+    {
+        this.categoryId = categoryId;
+    }
+
+    public BigDecimal getMinPrice()
+    {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice)
+    {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice)
+    {
+        this.maxPrice = maxPrice;
+    }
+
+    public String getColor()
+    {
+        return color;
+    }
+
+    public void setColor(String color)
+    {
+        this.color = color;
+    }
+
+    /**
+     * Free-text search over name and description ({@code q=}), or {@code null}.
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    public void setText(String text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * A text search without an explicit sort is ordered by relevance and returns the best matches only;
+     * it has no keyset to page by.
+     */
+    public boolean isRanked()
+    {
+        return text != null && sort == null;
+    }
+
+    public ProductSort getSort()
+    {
+        return sort;
+    }
+
+    public void setSort(ProductSort sort)
+    {
+        this.sort = sort;
+    }
+
+    public boolean isDescending()
+    {
+        return descending;
+    }
+
+    public void setDescending(boolean descending)
+    {
+        this.descending = descending;
+    }
+
+    public Integer getLimit()
+    {
+        return limit;
+    }
+
+    public void setLimit(Integer limit)
+    {
+        this.limit = limit;
+    }
+
+    public ProductCursor getAfter()
+    {
+        return after;
+    }
+
+    public void setAfter(ProductCursor after)
+    {
+        this.after = after;
+    }
+
+    /**
+     * The properties the caller wants, or {@code null} for all of them.
+     */
+    public Set<ProductField> getFields()
+    {
+        return fields;
+    }
+
+    public void setFields(Set<ProductField> fields)
+    {
+        this.fields = fields == null ? null : EnumSet.copyOf(fields);
+    }
+
+    /**
+     * The columns that have to be read: the requested fields plus whatever paging needs
+     * (product id and the sort column). {@code null} means every column.
+     */
+    public Set<ProductField> getRequiredFields()
+    {
+        if (fields == null)
+            return null;
+
+        Set<ProductField> required = EnumSet.copyOf(fields);
+        required.add(ProductField.PRODUCT_ID);
+        required.add(ProductField.forSort(getEffectiveSort()));
+        return required;
+    }
+
+    /**
+     * Paging needs a sort order; without an explicit one we page by product id.
+     */
+    public ProductSort getEffectiveSort()
+    {
+        return sort != null ? sort : ProductSort.ID;
+    }
+
+    public boolean isPaged()
+    {
+        return sort != null || limit != null || after != null;
+    }
+
+    public ProductQuery copy()
+    {
+        ProductQuery copy = new ProductQuery(categoryId, minPrice, maxPrice, color);
+        copy.text = text;
+        copy.sort = sort;
+        copy.descending = descending;
+        copy.limit = limit;
+        copy.after = after;
+        copy.fields = fields;
+        return copy;
+    }
+
+    /**
+     * A copy where equivalent filters are equal: 10, 10.0 and 10.00 are the same price, MySQL compares colors
+     * case-insensitively and ignoring trailing (but not leading) spaces, and search text case-insensitively.
+     * Nothing else is folded, so two queries MySQL could answer differently never share a cache key.
+     */
+    public ProductQuery normalized()
+    {
+        ProductQuery copy = copy();
+        copy.minPrice = minPrice == null ? null : minPrice.stripTrailingZeros();
+        copy.maxPrice = maxPrice == null ? null : maxPrice.stripTrailingZeros();
+        copy.color = color == null ? null : SqlValues.normalizeColor(color);
+        copy.text = text == null ? null : text.toLowerCase(Locale.ROOT);
+        return copy;
+    }
+
+    /**
+     * Applies the sort, cursor and limit of this query to an already filtered list.
+     */
+    public List<Product> page(List<Product> matches)
+    {
+        if (!isPaged())
+            return matches;
+
+        Comparator<Product> order = getEffectiveSort().comparator(descending);
+        Product cursor = after == null ? null : cursorPosition();
+
+        List<Product> page = new ArrayList<>();
+        matches.stream()
+               .filter(product -> cursor == null || order.compare(product, cursor) > 0)
+               .sorted(order)
+               .limit(limit == null ? Long.MAX_VALUE : limit)
+               .forEach(page::add);
+        return page;
+    }
+
+    // a stand-in product holding just the values the comparator looks at
+    private Product cursorPosition()
+    {
+        Product position = new Product();
+        position.setProductId(after.getLastProductId());
+        switch (after.getSort())
+        {
+            case PRICE -> position.setPrice(after.getLastValue() == null ? null : new BigDecimal(after.getLastValue()));
+            case NAME -> position.setName(after.getLastValue());
+            default -> { }
+        }
+        return position;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductQuery that = (ProductQuery) o;
+        return descending == that.descending &&
+                Objects.equals(categoryId, that.categoryId) &&
+                Objects.equals(minPrice, that.minPrice) &&
+                Objects.equals(maxPrice, that.maxPrice) &&
+                Objects.equals(color, that.color) &&
+                Objects.equals(text, that.text) &&
+                sort == that.sort &&
+                Objects.equals(limit, that.limit) &&
+                Objects.equals(after, that.after) &&
+                Objects.equals(fields, that.fields);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(categoryId, minPrice, maxPrice, color, text, sort, descending, limit, after, fields);
+    }
+}
@@ -0,0 +1,91 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Server-side sort orders for product listings. Every order ends with product_id so that it is total,
+ * which is what keyset pagination needs.
+ *
+ * The SQL key and the comparator must agree exactly, because a page can come from MySQL and the next one from an
+ * in-memory index (or the other way round). Names are therefore ordered by their raw utf8mb4 bytes, which is
+ * Unicode code point order, rather than by a collation Java can't reproduce. NULLs sort first, as in MySQL.
+ */
+public enum ProductSort
+{
+    ID("product_id", Comparator.comparingInt(Product::getProductId)),
+    PRICE("price", Comparator.comparing(Product::getPrice, Comparator.nullsFirst(Comparator.naturalOrder()))),
+    NAME("name_binary", Comparator.comparing(Product::getName, Comparator.nullsFirst(ProductSort::compareCodePoints)));
+
+    private final String sortKey;
+    private final Comparator<Product> comparator;
+
+    ProductSort(String sortKey, Comparator<Product> comparator)
+    {
+        this.sortKey = sortKey;
+        this.comparator = comparator;
+    }
+
+    /**
+     * The column to ORDER BY and to seek on; each is indexed together with product_id, so a page after a cursor is
+     * an index range scan. name_binary is the name as bytes, generated by MySQL.
+     */
+    public String getSortKey()
+    {
+        return sortKey;
+    }
+
+    public Comparator<Product> comparator(boolean descending)
+    {
+        Comparator<Product> order = comparator.thenComparingInt(Product::getProductId);
+        return descending ? order.reversed() : order;
+    }
+
+    /**
+     * The product's value for this sort as cursor text, or null when the product has none.
+     */
+    public String valueOf(Product product)
+    {
+        return switch (this)
+        {
+            case ID -> String.valueOf(product.getProductId());
+            case PRICE -> product.getPrice() == null ? null : product.getPrice().toPlainString();
+            case NAME -> product.getName();
+        };
+    }
+
+    // String.compareTo compares UTF-16 units, which puts characters above U+FFFF before U+E000..U+FFFF
+    static int compareCodePoints(String a, String b)
+    {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length())
+        {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y)
+                return Integer.compare(x, y);
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * Parses "price", "-price", "name", "id"... A leading '-' means descending.
+     */
+    public static ProductSort parse(String sort)
+    {
+        String name = sort.startsWith("-") ? sort.substring(1) : sort;
+        try
+        {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Unknown sort '" + sort + "'. Use price, name or id, optionally prefixed with '-'.");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * Published once per {@link ProductDao#createAll} chunk instead of one {@link ProductChangedEvent} per row, so a
+ * bulk import advances the catalog version and touches each index once per chunk. Listeners of
+ * {@link ProductChangedEvent} must also handle this event.
+ */
+public class ProductsCreatedEvent
+{
+    private final List<Product> products;
+
+    public ProductsCreatedEvent(List<Product> products)
+    {
+        this.products = List.copyOf(products);
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    /**
+     * The same writes as individual {@link ProductChangedEvent.Type#CREATED} events.
+     */
+    public List<ProductChangedEvent> asChanges()
+    {
+        return products.stream()
+                       .map(product -> new ProductChangedEvent(ProductChangedEvent.Type.CREATED, product.getProductId(), product))
+                       .toList();
+    }
+}
@@ -1,70 +1,301 @@
 package org.yearup.data;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.yearup.data.cart.CartLoader;
+import org.yearup.data.cart.CartMutationListener;
+import org.yearup.data.cart.CartRecovery;
+import org.yearup.data.cart.ExpiredCartListener;
+import org.yearup.data.cart.IntIntMap;
+import org.yearup.data.cart.TimingWheel;
 import org.yearup.models.Product;
 import org.yearup.models.ShoppingCart;
 import org.yearup.models.ShoppingCartItem;
 
+import javax.annotation.PreDestroy;
+import java.time.Clock;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * In-memory carts, safe for concurrent requests.
+ *
+ * A cart is only a product id to quantity map; product details are read from the catalog (through its cache)
+ * when the cart is read, so carts don't hold their own copies of products and prices are always current.
+ *
+ * Every cart has its own lock, so requests for one user are applied one at a time while other users' carts
+ * are never blocked. Reads return new items, so callers can't change a cart behind the lock's back.
+ *
+ * When a {@link CartLoader} is configured a cart is loaded from it the first time it is used, and every
+ * change is reported to the {@link CartMutationListener}s, which is how carts are persisted. Carts kept by a
+ * {@link CartRecovery} are restored before the store is used, and are not loaded again.
+ *
+ * A cart nobody has used for {@code cart.expiry.idle-ttl-minutes} is handed to the {@link ExpiredCartListener}s
+ * and evicted. Expiry runs on a {@link TimingWheel} instead of scanning every cart: a request only records when
+ * the cart was used, and a timer that fires for a cart used since then is moved to the new deadline. Without a
+ * {@link CartLoader} an evicted cart can't come back, so it is reported to the listeners as cleared; with one it
+ * is loaded again on its next use.
+ */
 @Repository
 public class ShoppingCartDaoImpl implements ShoppingCartDao {
 
-    // Simulated in-memory cart storage: userId -> list of cart items
-    private final Map<Integer, List<ShoppingCartItem>> cartStorage = new HashMap<>();
+    private static final Logger LOG = LoggerFactory.getLogger(ShoppingCartDaoImpl.class);
+
+    // levels of 64 ticks each; with one-second ticks the wheel covers 194 days
+    private static final int EXPIRY_LEVELS = 4;
+
+    private final ProductDao productDao;
+    private final CartLoader cartLoader;
+    private final List<CartMutationListener> listeners;
+    private final List<ExpiredCartListener> expiredListeners;
+    private final long idleTtlMillis;
+    private final Clock clock;
+    // guarded by itself; null when carts never expire
+    private final TimingWheel<Cart> expiry;
+    private final ScheduledExecutorService expiryTicker;
+
+    // userId -> that user's cart
+    private final ConcurrentHashMap<Integer, Cart> cartStorage = new ConcurrentHashMap<>();
+
+    private static final class Cart {
+        final int userId;
+        IntIntMap lines = new IntIntMap();
+        boolean loaded;
+        // set once the cart has been evicted; whoever still holds it starts over
+        boolean removed;
+        volatile long lastUsed;
+        TimingWheel.Timer<Cart> timer;
+
+        Cart(int userId) {
+            this.userId = userId;
+        }
+    }
+
+    @Autowired
+    public ShoppingCartDaoImpl(ProductDao productDao,
+                               ObjectProvider<CartLoader> cartLoader,
+                               ObjectProvider<CartMutationListener> listeners,
+                               ObjectProvider<CartRecovery> recovery,
+                               ObjectProvider<ExpiredCartListener> expiredListeners,
+                               @Value("${cart.expiry.idle-ttl-minutes:1440}") long idleTtlMinutes,
+                               @Value("${cart.expiry.tick-ms:1000}") long tickMillis) {
+        this(productDao, cartLoader, listeners, recovery, expiredListeners, idleTtlMinutes, tickMillis, Clock.systemUTC());
+    }
+
+    ShoppingCartDaoImpl(ProductDao productDao,
+                        ObjectProvider<CartLoader> cartLoader,
+                        ObjectProvider<CartMutationListener> listeners,
+                        ObjectProvider<CartRecovery> recovery,
+                        ObjectProvider<ExpiredCartListener> expiredListeners,
+                        long idleTtlMinutes,
+                        long tickMillis,
+                        Clock clock) {
+        this.clock = clock;
+        this.productDao = productDao;
+        this.cartLoader = cartLoader.getIfAvailable();
+        this.listeners = listeners.orderedStream().toList();
+        this.expiredListeners = expiredListeners.orderedStream().toList();
+        this.idleTtlMillis = TimeUnit.MINUTES.toMillis(idleTtlMinutes);
+
+        if (idleTtlMillis > 0) {
+            expiry = new TimingWheel<>(tickMillis, EXPIRY_LEVELS, clock.millis());
+            expiryTicker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cart-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            expiryTicker.scheduleWithFixedDelay(this::expireIdleCartsQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        } else {
+            expiry = null;
+            expiryTicker = null;
+        }
+
+        recovery.ifAvailable(source -> source.recover((userId, lines) -> {
+            Cart cart = newCart(userId);
+            cart.lines = lines;
+            cart.loaded = true;
+            cartStorage.put(userId, cart);
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (expiryTicker != null)
+            expiryTicker.shutdownNow();
+    }
 
     @Override
     public ShoppingCart getByUserId(int userId) {
-        List<ShoppingCartItem> items = cartStorage.getOrDefault(userId, new ArrayList<>());
-        return new ShoppingCart(userId, items);
+        return new ShoppingCart(userId, getItemsByUserId(userId));
     }
 
     @Override
     public List<ShoppingCartItem> getItemsByUserId(int userId) {
-        return cartStorage.getOrDefault(userId, new ArrayList<>());
+        IntIntMap[] lines = new IntIntMap[1];
+        withCart(userId, cart -> lines[0] = cart.lines.copy());
+
+        // products that have since been deleted drop out of the cart
+        int[] productIds = lines[0].keys();
+        if (productIds.length == 0)
+            return new ArrayList<>();
+        Arrays.sort(productIds);
+        List<ShoppingCartItem> items = new ArrayList<>(productIds.length);
+        for (Product product : productDao.getByIds(Arrays.stream(productIds).boxed().toList())) {
+            ShoppingCartItem item = new ShoppingCartItem();
+            item.setProduct(product);
+            item.setQuantity(lines[0].get(product.getProductId(), 0));
+            items.add(item);
+        }
+        return items;
     }
 
     @Override
     public void addItemToCart(int userId, ShoppingCartItem item) {
-        List<ShoppingCartItem> items = cartStorage.computeIfAbsent(userId, k -> new ArrayList<>());
-
-        // Check if product already exists in cart
-        for (ShoppingCartItem existingItem : items) {
-            if (existingItem.getProduct().getProductId() == item.getProduct().getProductId()) {
-                existingItem.setQuantity(existingItem.getQuantity() + item.getQuantity());
-                return;
+        int productId = item.getProduct().getProductId();
+        withCart(userId, cart -> {
+            // adds to the quantity when the product is already in the cart
+            int quantity = cart.lines.addTo(productId, item.getQuantity());
+            for (CartMutationListener listener : listeners) {
+                listener.lineSet(userId, productId, quantity);
             }
-        }
-
-        items.add(item);
+        });
     }
 
     @Override
     public void updateItemQuantity(int userId, int productId, int quantity) {
-        List<ShoppingCartItem> items = cartStorage.get(userId);
-        if (items != null) {
-            for (ShoppingCartItem item : items) {
-                if (item.getProduct().getProductId() == productId) {
-                    item.setQuantity(quantity);
-                    return;
+        withCart(userId, cart -> {
+            if (cart.lines.containsKey(productId)) {
+                cart.lines.put(productId, quantity);
+                for (CartMutationListener listener : listeners) {
+                    listener.lineSet(userId, productId, quantity);
                 }
             }
-        }
+        });
     }
 
     @Override
     public void removeItemFromCart(int userId, int productId) {
-        List<ShoppingCartItem> items = cartStorage.get(userId);
-        if (items != null) {
-            items.removeIf(item -> item.getProduct().getProductId() == productId);
-        }
+        withCart(userId, cart -> {
+            if (cart.lines.remove(productId)) {
+                for (CartMutationListener listener : listeners) {
+                    listener.lineRemoved(userId, productId);
+                }
+            }
+        });
     }
 
     @Override
     public void clearCart(int userId) {
-        cartStorage.remove(userId);
+        // no need to load what is about to be thrown away
+        withCart(userId, false, cart -> {
+            cart.lines.clear();
+            cart.loaded = true;
+            for (CartMutationListener listener : listeners) {
+                listener.cartCleared(userId);
+            }
+        });
+    }
+
+    /**
+     * Evicts the carts that have been idle since before {@code now} minus the idle TTL.
+     */
+    void expireIdleCarts(long now) {
+        if (expiry == null)
+            return;
+        List<Cart> due = new ArrayList<>();
+        synchronized (expiry) {
+            expiry.advance(now, due::add);
+        }
+
+        for (Cart cart : due) {
+            synchronized (cart) {
+                long deadline = cart.lastUsed + idleTtlMillis;
+                if (deadline > now) {
+                    // used since the timer was set
+                    synchronized (expiry) {
+                        expiry.schedule(cart.timer, deadline);
+                    }
+                    continue;
+                }
+
+                try {
+                    for (ExpiredCartListener listener : expiredListeners) {
+                        listener.cartExpired(cart.userId, cart.lines);
+                    }
+                    if (cartLoader == null && !cart.lines.isEmpty()) {
+                        for (CartMutationListener listener : listeners) {
+                            listener.cartCleared(cart.userId);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // keep the cart rather than lose changes a listener never saw; try again after another TTL
+                    LOG.error("Could not expire the cart of user {}; keeping it", cart.userId, e);
+                    synchronized (expiry) {
+                        expiry.schedule(cart.timer, now + idleTtlMillis);
+                    }
+                    continue;
+                }
+                cart.removed = true;
+                cartStorage.remove(cart.userId, cart);
+            }
+        }
+    }
+
+    // an exception escaping a scheduled task would cancel it, and carts would stop expiring for good
+    private void expireIdleCartsQuietly() {
+        try {
+            expireIdleCarts(clock.millis());
+        } catch (RuntimeException e) {
+            LOG.error("Cart expiry failed", e);
+        }
+    }
+
+    private void withCart(int userId, Consumer<Cart> action) {
+        withCart(userId, true, action);
+    }
+
+    // runs the action on the user's cart while holding its lock, loading the cart first if asked to
+    private void withCart(int userId, boolean load, Consumer<Cart> action) {
+        while (true) {
+            Cart cart = cartStorage.computeIfAbsent(userId, this::newCart);
+            synchronized (cart) {
+                if (cart.removed) {
+                    // it may have expired before it was even stored
+                    cartStorage.remove(userId, cart);
+                    continue;
+                }
+                cart.lastUsed = clock.millis();
+                if (load && !cart.loaded) {
+                    // only this user waits for the load
+                    if (cartLoader != null)
+                        cart.lines = cartLoader.load(userId);
+                    cart.loaded = true;
+                }
+                action.accept(cart);
+                return;
+            }
+        }
+    }
+
+    private Cart newCart(int userId) {
+        Cart cart = new Cart(userId);
+        cart.lastUsed = clock.millis();
+        if (expiry != null) {
+            synchronized (expiry) {
+                cart.timer = expiry.newTimer(cart);
+                expiry.schedule(cart.timer, cart.lastUsed + idleTtlMillis);
+            }
+        }
+        return cart;
     }
 }
@@ -0,0 +1,113 @@
+package org.yearup.data.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CategoryChangedEvent;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.mysql.MySqlCategoryDao;
+import org.yearup.models.Category;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the whole category list in memory; there are few categories and they rarely change. The list is loaded
+ * on first use (or by {@link CatalogWarmup}) and dropped on every category write.
+ */
+@Component
+@Primary
+public class CachingCategoryDao implements CategoryDao
+{
+    private final CategoryDao delegate;
+    private volatile Map<Integer, Category> categories;
+    // guarded by this; bumped by every write so a list read before the write is never kept
+    private long generation;
+
+    @Autowired
+    public CachingCategoryDao(MySqlCategoryDao delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Category> getAllCategories()
+    {
+        return new ArrayList<>(load().values());
+    }
+
+    @Override
+    public Category getById(int categoryId)
+    {
+        return load().get(categoryId);
+    }
+
+    @Override
+    public Category getByIdWithProducts(int categoryId)
+    {
+        // one joined query; caching the products is CachingProductDao's job
+        return delegate.getByIdWithProducts(categoryId);
+    }
+
+    @Override
+    public Category create(Category category)
+    {
+        return delegate.create(category);
+    }
+
+    @Override
+    public void update(int categoryId, Category category)
+    {
+        delegate.update(categoryId, category);
+    }
+
+    @Override
+    public void delete(int categoryId)
+    {
+        delegate.delete(categoryId);
+    }
+
+    /**
+     * Loads the category list now, so the first request doesn't have to. Returns how many categories there are.
+     */
+    public int warm()
+    {
+        return load().size();
+    }
+
+    @EventListener
+    public synchronized void onCategoryChanged(CategoryChangedEvent event)
+    {
+        generation++;
+        categories = null;
+    }
+
+    private Map<Integer, Category> load()
+    {
+        Map<Integer, Category> current = categories;
+        if (current == null)
+        {
+            long seen;
+            synchronized (this)
+            {
+                seen = generation;
+            }
+
+            current = new LinkedHashMap<>();
+            for (Category category : delegate.getAllCategories())
+            {
+                current.put(category.getCategoryId(), category);
+            }
+
+            synchronized (this)
+            {
+                if (generation == seen)
+                    categories = current;
+            }
+        }
+        return current;
+    }
+}
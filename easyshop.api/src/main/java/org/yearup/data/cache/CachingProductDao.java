@@ -0,0 +1,244 @@
+package org.yearup.data.cache;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.data.ProductsCreatedEvent;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.data.search.ProductSearchIndex;
+import org.yearup.data.search.ProductTextIndex;
+import org.yearup.models.CacheStats;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache in front of {@link MySqlProductDao}. Controllers get this bean because it is {@link Primary}.
+ */
+@Component
+@Primary
+public class CachingProductDao implements ProductDao
+{
+    private final ProductDao delegate;
+    private final ProductSearchIndex searchIndex;
+    private final ProductTextIndex textIndex;
+    private final TinyLfuCache<Integer, CompactProduct> products;
+    private final CompactProduct.Dictionary<Integer> categoryIds = new CompactProduct.Dictionary<>();
+    private final CompactProduct.Dictionary<String> colors = new CompactProduct.Dictionary<>();
+    private final ProductBatchLoader loader;
+    private final VersionedQueryCache<ProductQuery, List<Product>> searches;
+
+    @Autowired
+    public CachingProductDao(MySqlProductDao delegate,
+                             CatalogVersion catalogVersion,
+                             ObjectProvider<ProductSearchIndex> searchIndex,
+                             ObjectProvider<ProductTextIndex> textIndex,
+                             @Value("${products.cache.maximum-size:10000}") int maximumSize,
+                             @Value("${products.search-cache.maximum-size:1000}") int searchCacheSize,
+                             @Value("${products.loader.window-micros:1000}") long loaderWindowMicros,
+                             @Value("${products.loader.max-batch-size:100}") int loaderMaxBatchSize)
+    {
+        this.delegate = delegate;
+        this.searchIndex = searchIndex.getIfAvailable();
+        this.textIndex = textIndex.getIfAvailable();
+        this.products = new TinyLfuCache<>(maximumSize);
+        this.loader = new ProductBatchLoader(delegate::getByIds, loaderWindowMicros, loaderMaxBatchSize);
+        this.searches = new VersionedQueryCache<>(searchCacheSize, catalogVersion);
+    }
+
+    @Override
+    public List<Product> search(ProductQuery query)
+    {
+        if (query.getText() != null && textIndex != null && textIndex.isReady())
+        {
+            List<Product> matches = textIndex.search(query);
+            return query.isRanked() ? matches : query.page(matches);
+        }
+
+        if (query.getText() == null && searchIndex != null && searchIndex.isReady())
+        {
+            List<Product> matches = searchIndex.search(query.getCategoryId(), query.getMinPrice(), query.getMaxPrice(), query.getColor());
+            return query.page(matches);
+        }
+
+        // the raw (un-normalized) query is what gets sent to MySQL
+        return searches.get(query.normalized(), key -> Collections.unmodifiableList(delegate.search(query)));
+    }
+
+    @Override
+    public List<Product> listByCategoryId(int categoryId)
+    {
+        return search(new ProductQuery(categoryId, null, null, null));
+    }
+
+    @Override
+    public int countByCategoryId(int categoryId)
+    {
+        // guards deletes, so it always asks MySQL
+        return delegate.countByCategoryId(categoryId);
+    }
+
+    @Override
+    public void stream(ProductQuery query, Consumer<Product> consumer)
+    {
+        // exports read straight from MySQL so memory stays flat regardless of the result size
+        delegate.stream(query, consumer);
+    }
+
+    @Override
+    public Product getById(int productId)
+    {
+        CompactProduct cached = products.getIfPresent(productId);
+        if (cached != null)
+            return cached.toProduct(categoryIds, colors);
+
+        // misses share lookups already in flight and are batched with misses for other ids; the stamp is taken
+        // before joining one, so a row read before a write to it is returned but not cached
+        long stamp = products.stamp();
+        Product product = loader.load(productId);
+        if (product != null)
+            cache(product, stamp);
+        return product;
+    }
+
+    @Override
+    public List<Product> getByIds(Collection<Integer> productIds)
+    {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        Map<Integer, Product> found = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+
+        for (Integer id : ids)
+        {
+            CompactProduct cached = products.getIfPresent(id);
+            if (cached != null)
+                found.put(id, cached.toProduct(categoryIds, colors));
+            else
+                misses.add(id);
+        }
+
+        if (!misses.isEmpty())
+        {
+            long stamp = products.stamp();
+            for (Product product : delegate.getByIds(misses))
+            {
+                cache(product, stamp);
+                found.put(product.getProductId(), product);
+            }
+        }
+
+        List<Product> result = new ArrayList<>(found.size());
+        for (Integer id : ids)
+        {
+            Product product = found.get(id);
+            if (product != null)
+                result.add(product);
+        }
+        return result;
+    }
+
+    @Override
+    public Product create(Product product)
+    {
+        return delegate.create(product);
+    }
+
+    @Override
+    public List<String> createAll(List<Product> products)
+    {
+        return delegate.createAll(products);
+    }
+
+    @Override
+    public void update(int productId, Product product)
+    {
+        delegate.update(productId, product);
+    }
+
+    @Override
+    public void delete(int productId)
+    {
+        delegate.delete(productId);
+    }
+
+    // writes that bypass this class (e.g. straight to MySqlProductDao) still invalidate through the event;
+    // cached searches are dropped by CatalogVersion advancing on the same event
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        loader.invalidate(event.getProductId());
+        products.invalidate(event.getProductId());
+    }
+
+    @EventListener
+    public void onProductsCreated(ProductsCreatedEvent event)
+    {
+        for (Product product : event.getProducts())
+        {
+            loader.invalidate(product.getProductId());
+            products.invalidate(product.getProductId());
+        }
+    }
+
+    /**
+     * Take before reading the catalog that is passed to {@link #warm}.
+     */
+    public long stamp()
+    {
+        return products.stamp();
+    }
+
+    /**
+     * Fills the product cache ahead of the first requests, skipping products written since {@code stamp} was
+     * taken. Returns how many products it now holds, which is fewer than given once
+     * {@code products.cache.maximum-size} is reached.
+     */
+    public int warm(List<Product> catalog, long stamp)
+    {
+        for (Product product : catalog)
+        {
+            cache(product, stamp);
+        }
+        return products.size();
+    }
+
+    public Map<String, CacheStats> getCacheStats()
+    {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        CacheStats productStats = products.stats();
+        long bytes = 0;
+        for (CompactProduct product : products.values())
+        {
+            bytes += product.estimatedBytes();
+        }
+        productStats.setEstimatedBytes(bytes);
+        productStats.setBytesPerEntry(productStats.getSize() == 0 ? 0 : bytes / productStats.getSize());
+        stats.put("products", productStats);
+        stats.put("productSearches", searches.stats());
+        return stats;
+    }
+
+    // the caller keeps the Product it has; the cache keeps a compact copy of it, unless the product changed after
+    // the stamp was taken, i.e. while it was being read
+    private void cache(Product product, long stamp)
+    {
+        CompactProduct compact = CompactProduct.of(product, categoryIds, colors);
+        if (compact != null)
+            products.putIfNotInvalidated(product.getProductId(), compact, stamp);
+    }
+}
@@ -0,0 +1,126 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.data.search.ProductIndex;
+import org.yearup.data.search.ProductIndexMaintainer;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the catalog before the instance takes traffic: the category list, the product cache and the in-memory
+ * product indexes, on {@code catalog.warmup.threads} threads.
+ *
+ * Spring Boot only reports readiness ({@code /actuator/health/readiness}) as ACCEPTING_TRAFFIC once every
+ * {@link ApplicationRunner} has returned, so a load balancer probing it keeps requests away until this is done.
+ * A failed step is logged and skipped; the caches then fill on demand and the indexes stay "not ready".
+ */
+@Component
+public class CatalogWarmup implements ApplicationRunner
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogWarmup.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final MySqlProductDao mySqlProductDao;
+    private final CachingProductDao productCache;
+    private final CachingCategoryDao categoryCache;
+    private final ProductIndexMaintainer indexMaintainer;
+    private final int threads;
+
+    @Autowired
+    public CatalogWarmup(ApplicationEventPublisher eventPublisher,
+                         MySqlProductDao mySqlProductDao,
+                         CachingProductDao productCache,
+                         CachingCategoryDao categoryCache,
+                         ProductIndexMaintainer indexMaintainer,
+                         @Value("${catalog.warmup.threads:4}") int threads)
+    {
+        this.eventPublisher = eventPublisher;
+        this.mySqlProductDao = mySqlProductDao;
+        this.productCache = productCache;
+        this.categoryCache = categoryCache;
+        this.indexMaintainer = indexMaintainer;
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public void run(ApplicationArguments args)
+    {
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
+        {
+            CompletableFuture<Integer> categories = CompletableFuture.supplyAsync(categoryCache::warm, executor);
+
+            // writes that land while the products are read and built from are replayed onto the indexes, and
+            // keep the stale copy out of the product cache
+            indexMaintainer.beginRebuild();
+            long stamp = productCache.stamp();
+            CompletableFuture<List<Product>> products = CompletableFuture.supplyAsync(
+                    () -> mySqlProductDao.search(null, null, null, null), executor);
+
+            // everything below needs the product list, and each part can be built on its own thread
+            List<CompletableFuture<?>> steps = new ArrayList<>();
+            CompletableFuture<Integer> cached = products.thenApplyAsync(list -> productCache.warm(list, stamp), executor);
+            steps.add(cached);
+            for (ProductIndex index : indexMaintainer.getIndexes())
+            {
+                steps.add(products.thenAcceptAsync(list -> indexMaintainer.rebuild(index, list), executor));
+            }
+            steps.add(categories);
+
+            // steps that only failed because loading the products did share its exception; log it once
+            Set<Throwable> failures = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (CompletableFuture<?> step : steps)
+            {
+                try
+                {
+                    step.join();
+                }
+                catch (RuntimeException e)
+                {
+                    Throwable cause = e.getCause() == null ? e : e.getCause();
+                    if (failures.add(cause))
+                        LOG.error("Catalog warm-up step failed", cause);
+                }
+            }
+
+            LOG.info("Catalog warm-up finished in {} ms: {} categories, {} products, {} cached, {} of {} indexes ready, {} errors",
+                    (System.nanoTime() - start) / 1_000_000,
+                    categories.isCompletedExceptionally() ? 0 : categories.join(),
+                    products.isCompletedExceptionally() ? 0 : products.join().size(),
+                    cached.isCompletedExceptionally() ? 0 : cached.join(),
+                    indexMaintainer.getIndexes().stream().filter(ProductIndex::isReady).count(),
+                    indexMaintainer.getIndexes().size(),
+                    failures.size());
+        }
+        finally
+        {
+            indexMaintainer.endRebuild();
+            executor.shutdownNow();
+        }
+    }
+}
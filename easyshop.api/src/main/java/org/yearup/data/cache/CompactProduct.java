@@ -0,0 +1,257 @@
+package org.yearup.data.cache;
+
+import org.yearup.models.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The form a product takes inside {@link CachingProductDao}'s cache.
+ *
+ * The price is a long number of cents, the color and category id are 16-bit codes into dictionaries shared by
+ * all entries, and the description is kept as raw deflate bytes (or plain UTF-8 when that is smaller).
+ * {@link #toProduct} hands out an ordinary {@link Product} that only inflates its description when something
+ * reads it, so responses limited with {@code fields=} never pay for it.
+ */
+final class CompactProduct
+{
+    // object header and fields, rounded to 8 bytes, on a 64-bit JVM with compressed references
+    private static final int SHALLOW_BYTES = 48;
+    private static final long NO_PRICE = Long.MIN_VALUE;
+
+    private final int productId;
+    private final String name;
+    private final long priceCents;
+    private final char categoryCode;
+    private final char colorCode;
+    private final int stock;
+    private final boolean featured;
+    private final boolean deflated;
+    private final byte[] description;
+    private final String imageUrl;
+
+    private CompactProduct(int productId, String name, long priceCents, char categoryCode, char colorCode, int stock,
+                           boolean featured, boolean deflated, byte[] description, String imageUrl)
+    {
+        this.productId = productId;
+        this.name = name;
+        this.priceCents = priceCents;
+        this.categoryCode = categoryCode;
+        this.colorCode = colorCode;
+        this.stock = stock;
+        this.featured = featured;
+        this.deflated = deflated;
+        this.description = description;
+        this.imageUrl = imageUrl;
+    }
+
+    /**
+     * The compact form of {@code product}, or {@code null} when it can't be represented (a price with more than
+     * two decimals, or a dictionary that is full); such products are simply not cached.
+     */
+    static CompactProduct of(Product product, Dictionary<Integer> categories, Dictionary<String> colors)
+    {
+        long priceCents = toCents(product.getPrice());
+        int categoryCode = categories.encode(product.getCategoryId());
+        int colorCode = colors.encode(product.getColor());
+        if (priceCents == NO_PRICE && product.getPrice() != null || categoryCode < 0 || colorCode < 0)
+            return null;
+
+        byte[] description = null;
+        boolean deflated = false;
+        if (product.getDescription() != null)
+        {
+            byte[] utf8 = product.getDescription().getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = deflate(utf8);
+            deflated = compressed.length < utf8.length;
+            description = deflated ? compressed : utf8;
+        }
+
+        return new CompactProduct(product.getProductId(), product.getName(), priceCents, (char) categoryCode,
+                (char) colorCode, product.getStock(), product.isFeatured(), deflated, description, product.getImageUrl());
+    }
+
+    /**
+     * A new {@link Product} with this entry's values; callers may change it freely.
+     */
+    Product toProduct(Dictionary<Integer> categories, Dictionary<String> colors)
+    {
+        BigDecimal price = priceCents == NO_PRICE ? null : BigDecimal.valueOf(priceCents, 2);
+        return new Expanded(productId, name, price, categories.decode(categoryCode), colors.decode(colorCode),
+                stock, featured, imageUrl, description, deflated);
+    }
+
+    int getProductId()
+    {
+        return productId;
+    }
+
+    /**
+     * Roughly how much heap this entry holds on to, not counting the shared dictionaries.
+     */
+    long estimatedBytes()
+    {
+        return SHALLOW_BYTES + stringBytes(name) + stringBytes(imageUrl) + arrayBytes(description);
+    }
+
+    private static long stringBytes(String value)
+    {
+        if (value == null)
+            return 0;
+        // compact strings: one byte per char unless something is outside Latin-1
+        boolean latin1 = value.chars().allMatch(c -> c <= 0xFF);
+        return 24 + align(16 + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    private static long arrayBytes(byte[] value)
+    {
+        return value == null ? 0 : align(16 + value.length);
+    }
+
+    private static long align(long bytes)
+    {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long toCents(BigDecimal price)
+    {
+        if (price == null)
+            return NO_PRICE;
+        try
+        {
+            return price.movePointRight(2).longValueExact();
+        }
+        catch (ArithmeticException e)
+        {
+            return NO_PRICE;
+        }
+    }
+
+    private static byte[] deflate(byte[] data)
+    {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try
+        {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished())
+            {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(byte[] data)
+    {
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished())
+            {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                out.write(buffer, 0, count);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
+        catch (DataFormatException e)
+        {
+            throw new IllegalStateException("Corrupt cached description", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Values shared by many products, each stored once and referred to by a 16-bit code. Code
+     * {@code 0xFFFF} stands for {@code null}; once every other code is taken {@link #encode} returns -1.
+     */
+    static final class Dictionary<T>
+    {
+        private static final int NULL_CODE = 0xFFFF;
+
+        private final Map<T, Integer> codes = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        synchronized int encode(T value)
+        {
+            if (value == null)
+                return NULL_CODE;
+
+            Integer code = codes.get(value);
+            if (code != null)
+                return code;
+            if (values.size() == NULL_CODE)
+                return -1;
+
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+            return code;
+        }
+
+        synchronized T decode(int code)
+        {
+            return code == NULL_CODE ? null : values.get(code);
+        }
+
+        synchronized int size()
+        {
+            return values.size();
+        }
+    }
+
+    // a Product whose description is inflated on first read
+    private static final class Expanded extends Product
+    {
+        private byte[] pending;
+        private boolean deflated;
+
+        Expanded(int productId, String name, BigDecimal price, int categoryId, String color, int stock,
+                 boolean featured, String imageUrl, byte[] description, boolean deflated)
+        {
+            super(productId, name, price, categoryId, null, color, stock, featured, imageUrl);
+            this.pending = description;
+            this.deflated = deflated;
+        }
+
+        @Override
+        public String getDescription()
+        {
+            if (pending != null)
+            {
+                super.setDescription(deflated ? inflate(pending) : new String(pending, StandardCharsets.UTF_8));
+                pending = null;
+            }
+            return super.getDescription();
+        }
+
+        @Override
+        public void setDescription(String description)
+        {
+            pending = null;
+            super.setDescription(description);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.yearup.data.cache;
+
+/**
+ * A 4-bit Count-Min sketch used by {@link TinyLfuCache} to estimate how often a key has been requested.
+ * Counters are halved once the sample size is reached so that old popularity fades away.
+ */
+class FrequencySketch
+{
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(16, maximumSize - 1) << 1);
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = Math.max(10 * maximumSize, 160);
+    }
+
+    int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++)
+        {
+            int index = indexOf(hash, i);
+            int offset = counterOffset(hash, i);
+            int count = (int) ((table[index] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+        {
+            int index = indexOf(hash, i);
+            int offset = counterOffset(hash, i);
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask)
+            {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+
+        if (added && ++additions == sampleSize)
+        {
+            reset();
+        }
+    }
+
+    private void reset()
+    {
+        for (int i = 0; i < table.length; i++)
+        {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int counterOffset(int hash, int i)
+    {
+        // each long holds sixteen 4-bit counters; pick a different one per hash function
+        return (((hash >>> (i << 3)) & 3) << 2) + (i << 4);
+    }
+
+    private static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
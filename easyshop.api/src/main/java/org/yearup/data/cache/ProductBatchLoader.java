@@ -0,0 +1,171 @@
+package org.yearup.data.cache;
+
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Coalesces single product lookups.
+ *
+ * Concurrent loads of the same id share one future. Loads of different ids that arrive within
+ * {@code windowMicros} of the first one are sent to the database together as one {@code getByIds} call; a batch
+ * that reaches {@code maxBatchSize} goes out straight away. No extra threads are involved: the first caller of a
+ * batch waits out the window and runs the query, everyone else waits for their future.
+ */
+public class ProductBatchLoader
+{
+    private final Function<List<Integer>, List<Product>> batchQuery;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final Map<Integer, CompletableFuture<Product>> inFlight = new ConcurrentHashMap<>();
+    // guarded by this
+    private Batch pending;
+
+    public ProductBatchLoader(Function<List<Integer>, List<Product>> batchQuery, long windowMicros, int maxBatchSize)
+    {
+        this.batchQuery = batchQuery;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * The product with the given id, or {@code null} when there is none.
+     */
+    public Product load(int productId)
+    {
+        CompletableFuture<Product> future = inFlight.get(productId);
+        if (future == null)
+        {
+            CompletableFuture<Product> created = new CompletableFuture<>();
+            future = inFlight.putIfAbsent(productId, created);
+            if (future == null)
+            {
+                future = created;
+                enqueue(productId, created);
+            }
+        }
+
+        try
+        {
+            return future.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Lets the next load of {@code productId} go to the database instead of joining a lookup that may have read
+     * the row before it changed. Callers that already joined that lookup still get its (possibly old) row; callers
+     * that cache what they load must check for the change themselves, as {@link CachingProductDao} does with
+     * {@link TinyLfuCache#stamp()}.
+     */
+    public void invalidate(int productId)
+    {
+        inFlight.remove(productId);
+    }
+
+    private void enqueue(int productId, CompletableFuture<Product> future)
+    {
+        Batch batch;
+        boolean first;
+        boolean full;
+        synchronized (this)
+        {
+            first = pending == null;
+            if (first)
+                pending = new Batch();
+            batch = pending;
+            batch.add(productId, future);
+            full = batch.size() >= maxBatchSize;
+            if (full)
+                pending = null;
+        }
+
+        if (!full)
+        {
+            if (!first)
+                return;
+            if (windowNanos > 0)
+                LockSupport.parkNanos(windowNanos);
+            synchronized (this)
+            {
+                if (pending == batch)
+                    pending = null;
+            }
+        }
+
+        if (batch.claim())
+            run(batch);
+    }
+
+    private void run(Batch batch)
+    {
+        try
+        {
+            Map<Integer, Product> found = new HashMap<>();
+            for (Product product : batchQuery.apply(batch.productIds))
+            {
+                found.put(product.getProductId(), product);
+            }
+            for (int i = 0; i < batch.productIds.size(); i++)
+            {
+                batch.futures.get(i).complete(found.get(batch.productIds.get(i)));
+            }
+        }
+        catch (Throwable e)
+        {
+            for (CompletableFuture<Product> future : batch.futures)
+            {
+                future.completeExceptionally(e);
+            }
+        }
+        finally
+        {
+            for (int i = 0; i < batch.productIds.size(); i++)
+            {
+                inFlight.remove(batch.productIds.get(i), batch.futures.get(i));
+            }
+        }
+    }
+
+    private static final class Batch
+    {
+        final List<Integer> productIds = new ArrayList<>();
+        final List<CompletableFuture<Product>> futures = new ArrayList<>();
+        private boolean claimed;
+
+        void add(int productId, CompletableFuture<Product> future)
+        {
+            productIds.add(productId);
+            futures.add(future);
+        }
+
+        int size()
+        {
+            return productIds.size();
+        }
+
+        // exactly one caller runs a batch: whoever fills it up, or else its first caller once the window is over
+        synchronized boolean claim()
+        {
+            if (claimed)
+                return false;
+            claimed = true;
+            return true;
+        }
+    }
+}
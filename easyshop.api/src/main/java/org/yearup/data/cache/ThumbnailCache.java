@@ -0,0 +1,306 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Resized copies of product images, made on first request and kept on disk.
+ *
+ * Resizing runs on a small fixed pool with a bounded queue, so a burst of new widths can't starve request
+ * threads; when the queue is full {@link #thumbnail} fails with {@link java.util.concurrent.RejectedExecutionException}.
+ * Concurrent requests for the same variant share one resize. Variants are named after the source file's size and
+ * modification time, so replacing a source image never serves a stale thumbnail; the oldest variants are deleted
+ * once the folder grows past {@code images.thumbnails.cache-max-bytes}.
+ */
+@Component
+@ConditionalOnProperty(name = "static.enabled", havingValue = "true")
+public class ThumbnailCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ThumbnailCache.class);
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int[] widths;
+    private final ThreadPoolExecutor workers;
+
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    // file name -> size, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    @Autowired
+    public ThumbnailCache(@Value("${images.thumbnails.cache-dir:${java.io.tmpdir}/easyshop-thumbnails}") String directory,
+                          @Value("${images.thumbnails.cache-max-bytes:268435456}") long maxBytes,
+                          @Value("${images.thumbnails.widths:100,200,400}") int[] widths,
+                          @Value("${images.thumbnails.threads:2}") int threads,
+                          @Value("${images.thumbnails.queue-size:64}") int queueSize) throws IOException
+    {
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.maxBytes = maxBytes;
+        this.widths = widths.clone();
+        Arrays.sort(this.widths);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        loadExisting();
+    }
+
+    public boolean isSupportedWidth(int width)
+    {
+        return Arrays.binarySearch(widths, width) >= 0;
+    }
+
+    public int[] getWidths()
+    {
+        return widths.clone();
+    }
+
+    /**
+     * The cached variant of {@code source} at {@code width} pixels wide, resizing it first if needed.
+     * Images that are already narrower than {@code width} are cached unchanged.
+     */
+    public CompletableFuture<Path> thumbnail(Path source, int width) throws IOException
+    {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        String fileName = variantName(source, width, attributes);
+
+        Path cached = directory.resolve(fileName);
+        if (touch(fileName) && Files.isRegularFile(cached))
+            return CompletableFuture.completedFuture(cached);
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(fileName, created);
+        if (existing != null)
+            return existing;
+
+        try
+        {
+            workers.execute(() -> {
+                try
+                {
+                    created.complete(resize(source, width, cached));
+                }
+                catch (Throwable e)
+                {
+                    created.completeExceptionally(e);
+                }
+                finally
+                {
+                    inFlight.remove(fileName, created);
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            inFlight.remove(fileName, created);
+            throw e;
+        }
+        return created;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        workers.shutdownNow();
+    }
+
+    private Path resize(Path source, int width, Path target) throws IOException
+    {
+        BufferedImage original = ImageIO.read(source.toFile());
+        if (original == null)
+            throw new IOException("Not a readable image: " + source.getFileName());
+
+        // write next to the target and move it into place, so readers never see half a file
+        Path temporary = Files.createTempFile(directory, "resize-", ".tmp");
+        try
+        {
+            // a source that is already small enough is cached as it is, so it isn't decoded again next time
+            if (original.getWidth() <= width)
+                Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            else if (isPng(source))
+                ImageIO.write(scale(original, width), "png", temporary.toFile());
+            else
+                writeJpeg(scale(original, width), temporary);
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+
+        record(target.getFileName().toString(), Files.size(target));
+        return target;
+    }
+
+    // halving first and finishing with one bilinear step is close to area averaging at a fraction of the cost
+    private static BufferedImage scale(BufferedImage image, int width)
+    {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+
+        do
+        {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = currentWidth == width ? height : Math.max(height, currentHeight / 2);
+
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = next;
+        }
+        while (currentWidth > width);
+
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException
+    {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile()))
+        {
+            ImageWriteParam parameters = writer.getDefaultWriteParam();
+            parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parameters.setCompressionQuality(JPEG_QUALITY);
+            parameters.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), parameters);
+        }
+        finally
+        {
+            writer.dispose();
+        }
+    }
+
+    private synchronized boolean touch(String fileName)
+    {
+        return entries.get(fileName) != null;
+    }
+
+    private synchronized void record(String fileName, long size)
+    {
+        Long previous = entries.put(fileName, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+
+        Iterator<Map.Entry<String, Long>> oldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && oldest.hasNext())
+        {
+            Map.Entry<String, Long> entry = oldest.next();
+            if (entry.getKey().equals(fileName))
+                continue;
+            try
+            {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            }
+            catch (IOException e)
+            {
+                LOG.warn("Could not delete thumbnail {}", entry.getKey(), e);
+                continue;
+            }
+            totalBytes -= entry.getValue();
+            oldest.remove();
+        }
+    }
+
+    // variants left by a previous run, oldest first so they are the first to go
+    private void loadExisting() throws IOException
+    {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory))
+        {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+
+        files.stream()
+             .sorted(Comparator.comparingLong(ThumbnailCache::modified))
+             .forEach(file -> {
+                 if (file.getFileName().toString().endsWith(".tmp"))
+                 {
+                     file.toFile().delete();
+                     return;
+                 }
+                 try
+                 {
+                     record(file.getFileName().toString(), Files.size(file));
+                 }
+                 catch (IOException e)
+                 {
+                     throw new UncheckedIOException(e);
+                 }
+             });
+    }
+
+    private static long modified(Path file)
+    {
+        try
+        {
+            return Files.getLastModifiedTime(file).toMillis();
+        }
+        catch (IOException e)
+        {
+            return 0;
+        }
+    }
+
+    private static String variantName(Path source, int width, BasicFileAttributes attributes)
+    {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot).toLowerCase(Locale.ROOT);
+        String version = Long.toString(attributes.size(), 36) + Long.toString(attributes.lastModifiedTime().toMillis(), 36);
+        return base + "-w" + width + "-" + version + extension;
+    }
+
+    private static boolean isPng(Path file)
+    {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".png");
+    }
+}
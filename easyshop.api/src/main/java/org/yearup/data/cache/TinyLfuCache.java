@@ -0,0 +1,298 @@
+package org.yearup.data.cache;
+
+import org.yearup.models.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded, frequency-aware cache using the W-TinyLFU policy.
+ *
+ * New entries land in a small LRU "window". When the window overflows, its oldest entry competes with the
+ * oldest entry of the main segment and whichever the frequency sketch says is more popular is kept.
+ * The main segment is a segmented LRU (probation + protected) so that entries hit more than once survive scans.
+ *
+ * Loading is done outside of the lock, so slow loaders never block readers of other keys. A value loaded before
+ * its key was invalidated is not cached: take a {@link #stamp()} before reading the source and cache the result with
+ * {@link #putIfNotInvalidated}. Invalidations are remembered per stripe of keys rather than per key, so memory stays
+ * fixed; a put is occasionally refused because another key in its stripe changed, which only costs a later miss.
+ */
+public class TinyLfuCache<K, V>
+{
+    private enum Segment { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<K, V>
+    {
+        final K key;
+        V value;
+        Segment segment;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class AccessOrder<K, V>
+    {
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        void addLast(Node<K, V> node)
+        {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null)
+                head = node;
+            else
+                tail.next = node;
+            tail = node;
+            size++;
+        }
+
+        void remove(Node<K, V> node)
+        {
+            if (node.prev == null)
+                head = node.next;
+            else
+                node.prev.next = node.next;
+
+            if (node.next == null)
+                tail = node.prev;
+            else
+                node.next.prev = node.prev;
+
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToLast(Node<K, V> node)
+        {
+            if (node != tail)
+            {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear()
+        {
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+    private final FrequencySketch sketch;
+
+    private static final int STRIPES = 1024;
+
+    private final int maximumSize;
+    private final int maxWindow;
+    private final int maxProtected;
+
+    // invalidation clock, and its value at the latest invalidation of any key in each stripe
+    private long clock;
+    private final long[] invalidatedAt = new long[STRIPES];
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TinyLfuCache(int maximumSize)
+    {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+
+        this.maximumSize = maximumSize;
+        this.maxWindow = Math.max(1, maximumSize / 100);
+        this.maxProtected = (int) ((maximumSize - maxWindow) * 0.8);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    public synchronized V getIfPresent(K key)
+    {
+        sketch.increment(key);
+
+        Node<K, V> node = data.get(key);
+        if (node == null)
+        {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Returns the cached value, or loads and caches it. A {@code null} result from the loader is not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader)
+    {
+        V value = getIfPresent(key);
+        if (value != null)
+            return value;
+
+        long stamp = stamp();
+        value = loader.apply(key);
+        if (value != null)
+            putIfNotInvalidated(key, value, stamp);
+
+        return value;
+    }
+
+    /**
+     * The point in time to pass to {@link #putIfNotInvalidated}; take it before reading the value from its source.
+     */
+    public synchronized long stamp()
+    {
+        return clock;
+    }
+
+    /**
+     * Caches the value unless its key was invalidated after {@code stamp} was taken, i.e. while the value was being
+     * read and it may already be out of date. Returns whether it was cached.
+     */
+    public synchronized boolean putIfNotInvalidated(K key, V value, long stamp)
+    {
+        if (invalidatedAt[stripe(key)] > stamp)
+            return false;
+        put(key, value);
+        return true;
+    }
+
+    public synchronized void put(K key, V value)
+    {
+        Node<K, V> node = data.get(key);
+        if (node != null)
+        {
+            node.value = value;
+            onAccess(node);
+            return;
+        }
+
+        node = new Node<>(key, value);
+        node.segment = Segment.WINDOW;
+        data.put(key, node);
+        window.addLast(node);
+        evict();
+    }
+
+    public synchronized void invalidate(K key)
+    {
+        invalidatedAt[stripe(key)] = ++clock;
+        Node<K, V> node = data.remove(key);
+        if (node != null)
+            segmentOf(node).remove(node);
+    }
+
+    public synchronized void invalidateAll()
+    {
+        Arrays.fill(invalidatedAt, ++clock);
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    public synchronized int size()
+    {
+        return data.size();
+    }
+
+    /**
+     * A snapshot of the cached values, in no particular order.
+     */
+    public synchronized List<V> values()
+    {
+        List<V> values = new ArrayList<>(data.size());
+        for (Node<K, V> node : data.values())
+        {
+            values.add(node.value);
+        }
+        return values;
+    }
+
+    public synchronized CacheStats stats()
+    {
+        return new CacheStats(hits, misses, evictions, data.size(), maximumSize);
+    }
+
+    private void onAccess(Node<K, V> node)
+    {
+        switch (node.segment)
+        {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.segment = Segment.PROTECTED;
+                protectedSegment.addLast(node);
+
+                // keep the protected segment within its share by demoting its oldest entry
+                if (protectedSegment.size > maxProtected)
+                {
+                    Node<K, V> demoted = protectedSegment.head;
+                    protectedSegment.remove(demoted);
+                    demoted.segment = Segment.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            case PROTECTED -> protectedSegment.moveToLast(node);
+        }
+    }
+
+    private void evict()
+    {
+        while (window.size > maxWindow)
+        {
+            Node<K, V> candidate = window.head;
+            window.remove(candidate);
+            candidate.segment = Segment.PROBATION;
+            probation.addLast(candidate);
+
+            if (data.size() <= maximumSize)
+                continue;
+
+            Node<K, V> victim = probation.head != candidate ? probation.head : protectedSegment.head;
+
+            // admit the candidate only if it is requested more often than the entry it would displace
+            Node<K, V> evicted = victim != null && sketch.frequency(candidate.key) > sketch.frequency(victim.key)
+                    ? victim
+                    : candidate;
+            segmentOf(evicted).remove(evicted);
+            data.remove(evicted.key);
+            evictions++;
+        }
+    }
+
+    private static int stripe(Object key)
+    {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    private AccessOrder<K, V> segmentOf(Node<K, V> node)
+    {
+        return switch (node.segment)
+        {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            case PROTECTED -> protectedSegment;
+        };
+    }
+}
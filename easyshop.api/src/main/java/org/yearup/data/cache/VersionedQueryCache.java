@@ -0,0 +1,62 @@
+package org.yearup.data.cache;
+
+import org.yearup.data.CatalogVersion;
+import org.yearup.models.CacheStats;
+
+import java.util.function.Function;
+
+/**
+ * Caches query results stamped with the {@link CatalogVersion} they were computed at.
+ * Advancing the catalog version makes every entry stale at once; stale entries are simply replaced the next
+ * time their key is requested, so invalidation never has to walk the cache.
+ */
+public class VersionedQueryCache<K, V>
+{
+    private record Entry<V>(long version, V value) {}
+
+    private final TinyLfuCache<K, Entry<V>> cache;
+    private final CatalogVersion catalogVersion;
+    private long staleHits;
+
+    public VersionedQueryCache(int maximumSize, CatalogVersion catalogVersion)
+    {
+        this.cache = new TinyLfuCache<>(maximumSize);
+        this.catalogVersion = catalogVersion;
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader)
+    {
+        // read the version before loading so a write that lands mid-query leaves the entry already stale
+        long version = catalogVersion.current();
+
+        Entry<V> entry = cache.getIfPresent(key);
+        if (entry != null)
+        {
+            if (entry.version() == version)
+                return entry.value();
+
+            synchronized (this)
+            {
+                staleHits++;
+            }
+        }
+
+        V value = loader.apply(key);
+        if (value != null)
+            cache.put(key, new Entry<>(version, value));
+
+        return value;
+    }
+
+    public CacheStats stats()
+    {
+        CacheStats stats = cache.stats();
+        synchronized (this)
+        {
+            // a stale entry is a miss as far as callers are concerned
+            stats.setHits(stats.getHits() - staleHits);
+            stats.setMisses(stats.getMisses() + staleHits);
+        }
+        return stats;
+    }
+}
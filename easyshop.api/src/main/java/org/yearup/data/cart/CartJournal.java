@@ -0,0 +1,480 @@
+package org.yearup.data.cart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Keeps carts across restarts in an append-only journal on local disk.
+ *
+ * Every cart change is appended as a fixed-size record (type, user, product, quantity, CRC32) to a memory-mapped
+ * segment file, so a change costs a few bytes copied into the page cache. The segment is forced to disk every
+ * {@code cart.journal.fsync-interval-ms} for all changes made since the last force (0 forces after every change);
+ * changes in that window survive a crash of the process but not of the machine.
+ *
+ * Every {@code cart.journal.snapshot-interval-seconds} the current segment is closed and the previous snapshot plus
+ * the closed segments are folded into a new snapshot, after which those segments are deleted. A snapshot is written
+ * to a temporary file and renamed, so a crash leaves either the old snapshot and its segments or the new one.
+ * Recovery reads the latest snapshot and replays the segments after it. Records hold absolute quantities, so
+ * replaying a segment twice gives the same carts, and replay stops at the first torn record.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.journal.enabled", havingValue = "true")
+public class CartJournal implements CartMutationListener, CartRecovery
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CartJournal.class);
+
+    private static final byte END = 0;
+    private static final byte SET = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    // type, user id, product id, quantity, then the CRC32 of those
+    private static final int RECORD_BYTES = 1 + 4 + 4 + 4 + 4;
+    private static final int SNAPSHOT_MAGIC = 0x43415254;
+
+    private static final String SEGMENT_PREFIX = "cart-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "cart-snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean forceEveryChange;
+    // segments before this one were written by earlier runs
+    private final long firstSequence;
+    private final ScheduledExecutorService background;
+    private final Object snapshotLock = new Object();
+
+    // guarded by this
+    private final CRC32 crc = new CRC32();
+    private long sequence;
+    private MappedByteBuffer segment;
+    private boolean dirty;
+
+    @Autowired
+    public CartJournal(@Value("${cart.journal.directory:data/cart-journal}") String directory,
+                       @Value("${cart.journal.segment-bytes:67108864}") int segmentBytes,
+                       @Value("${cart.journal.fsync-interval-ms:100}") long fsyncIntervalMs,
+                       @Value("${cart.journal.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) throws IOException
+    {
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_BYTES;
+        this.forceEveryChange = fsyncIntervalMs <= 0;
+
+        long last = 0;
+        for (Path file : list(SEGMENT_PREFIX, SEGMENT_SUFFIX))
+        {
+            last = Math.max(last, sequenceOf(file));
+        }
+        for (Path file : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+        {
+            last = Math.max(last, sequenceOf(file));
+        }
+        this.firstSequence = last + 1;
+        openSegment(firstSequence);
+
+        this.background = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "cart-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!forceEveryChange)
+            background.scheduleWithFixedDelay(this::force, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        background.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void lineSet(int userId, int productId, int quantity)
+    {
+        append(SET, userId, productId, quantity);
+    }
+
+    @Override
+    public void lineRemoved(int userId, int productId)
+    {
+        append(REMOVE, userId, productId, 0);
+    }
+
+    @Override
+    public void cartCleared(int userId)
+    {
+        append(CLEAR, userId, 0, 0);
+    }
+
+    @Override
+    public void recover(CartConsumer consumer)
+    {
+        long started = System.nanoTime();
+        Map<Integer, IntIntMap> carts;
+        synchronized (snapshotLock)
+        {
+            try
+            {
+                carts = read(firstSequence);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        int recovered = 0;
+        for (Map.Entry<Integer, IntIntMap> cart : carts.entrySet())
+        {
+            if (!cart.getValue().isEmpty())
+            {
+                consumer.accept(cart.getKey(), cart.getValue());
+                recovered++;
+            }
+        }
+        LOG.info("Recovered {} carts from {} in {} ms", recovered, directory,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Closes the current segment and folds it, with every other closed segment, into a new snapshot.
+     */
+    void snapshot() throws IOException
+    {
+        synchronized (snapshotLock)
+        {
+            long upTo;
+            MappedByteBuffer closed = null;
+            synchronized (this)
+            {
+                if (segment.position() > 0)
+                    closed = rotate();
+                upTo = sequence;
+            }
+            if (closed != null)
+                closed.force();
+
+            List<Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX).stream()
+                    .filter(file -> sequenceOf(file) < upTo)
+                    .toList();
+            if (segments.isEmpty())
+                return;
+
+            Map<Integer, IntIntMap> carts = read(upTo);
+            Path snapshot = directory.resolve(SNAPSHOT_PREFIX + String.format("%020d", upTo) + SNAPSHOT_SUFFIX);
+            Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+            writeSnapshot(temporary, carts);
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+            // everything before the new snapshot is now in it
+            for (Path file : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+            {
+                if (sequenceOf(file) < upTo)
+                    Files.delete(file);
+            }
+            for (Path file : segments)
+            {
+                Files.delete(file);
+            }
+            LOG.info("Cart journal snapshot {} holds {} carts; removed {} segments", snapshot.getFileName(),
+                    carts.size(), segments.size());
+        }
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        background.shutdown();
+        try
+        {
+            background.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this)
+        {
+            segment.force();
+            dirty = false;
+        }
+    }
+
+    private void append(byte type, int userId, int productId, int quantity)
+    {
+        MappedByteBuffer closed = null;
+        MappedByteBuffer written;
+        int start;
+        synchronized (this)
+        {
+            if (segment.remaining() < RECORD_BYTES)
+            {
+                try
+                {
+                    closed = rotate();
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            start = segment.position();
+            segment.put(type).putInt(userId).putInt(productId).putInt(quantity);
+            crc.reset();
+            crc.update(segment.slice(start, RECORD_BYTES - 4));
+            segment.putInt((int) crc.getValue());
+
+            written = segment;
+            if (!forceEveryChange)
+                dirty = true;
+        }
+
+        // the disk writes happen outside the lock, so other changes keep appending while this one waits
+        if (closed != null)
+            closed.force();
+        if (forceEveryChange)
+            written.force(start, RECORD_BYTES);
+    }
+
+    // one force covers every change made since the last one; appends carry on meanwhile
+    private void force()
+    {
+        MappedByteBuffer toForce;
+        synchronized (this)
+        {
+            if (!dirty)
+                return;
+            toForce = segment;
+            dirty = false;
+        }
+        try
+        {
+            toForce.force();
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Could not force the cart journal to disk", e);
+        }
+    }
+
+    private void snapshotQuietly()
+    {
+        try
+        {
+            snapshot();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOG.error("Could not write a cart journal snapshot; the journal keeps growing until one succeeds", e);
+        }
+    }
+
+    // guarded by this; returns the closed segment, which the caller forces once it has let go of the lock
+    private MappedByteBuffer rotate() throws IOException
+    {
+        MappedByteBuffer closed = segment;
+        openSegment(sequence + 1);
+        dirty = false;
+        return closed;
+    }
+
+    private void openSegment(long sequence) throws IOException
+    {
+        Path file = directory.resolve(SEGMENT_PREFIX + String.format("%020d", sequence) + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            // the mapping stays valid after the channel is closed; the file starts zero-filled, i.e. all END
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        this.sequence = sequence;
+    }
+
+    // the carts as of the start of segment upTo: the latest snapshot before it plus the segments after that
+    private Map<Integer, IntIntMap> read(long upTo) throws IOException
+    {
+        Map<Integer, IntIntMap> carts = new HashMap<>();
+        long from = 0;
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--)
+        {
+            Path snapshot = snapshots.get(i);
+            if (sequenceOf(snapshot) > upTo)
+                continue;
+            try
+            {
+                carts = readSnapshot(snapshot);
+                from = sequenceOf(snapshot);
+                break;
+            }
+            catch (IOException e)
+            {
+                LOG.error("Skipping unreadable cart snapshot {}", snapshot, e);
+                carts = new HashMap<>();
+            }
+        }
+
+        for (Path file : list(SEGMENT_PREFIX, SEGMENT_SUFFIX))
+        {
+            long segmentSequence = sequenceOf(file);
+            if (segmentSequence >= from && segmentSequence < upTo)
+                replay(file, carts);
+        }
+        return carts;
+    }
+
+    private static void replay(Path file, Map<Integer, IntIntMap> carts) throws IOException
+    {
+        ByteBuffer records;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        CRC32 crc = new CRC32();
+        while (records.remaining() >= RECORD_BYTES)
+        {
+            int start = records.position();
+            byte type = records.get();
+            if (type == END)
+                return;
+            int userId = records.getInt();
+            int productId = records.getInt();
+            int quantity = records.getInt();
+            int checksum = records.getInt();
+
+            crc.reset();
+            crc.update(records.slice(start, RECORD_BYTES - 4));
+            if ((int) crc.getValue() != checksum)
+            {
+                // a record cut off by a crash; nothing after it in this segment was acknowledged to disk
+                LOG.warn("Cart journal {} ends with a torn record at byte {}", file.getFileName(), start);
+                return;
+            }
+
+            switch (type)
+            {
+                case SET -> carts.computeIfAbsent(userId, id -> new IntIntMap()).put(productId, quantity);
+                case REMOVE -> {
+                    IntIntMap lines = carts.get(userId);
+                    if (lines != null)
+                        lines.remove(productId);
+                }
+                case CLEAR -> carts.remove(userId);
+                default -> throw new IOException("Unknown record type " + type + " at byte " + start + " of " + file);
+            }
+        }
+    }
+
+    private static Map<Integer, IntIntMap> readSnapshot(Path file) throws IOException
+    {
+        ByteBuffer snapshot;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // the last four bytes are the CRC32 of everything before them
+        int checksumAt = snapshot.limit() - 4;
+        if (checksumAt < 8)
+            throw new IOException("Truncated cart snapshot " + file);
+        CRC32 crc = new CRC32();
+        crc.update(snapshot.slice(0, checksumAt));
+        if ((int) crc.getValue() != snapshot.getInt(checksumAt))
+            throw new IOException("Checksum mismatch in cart snapshot " + file);
+
+        if (snapshot.getInt() != SNAPSHOT_MAGIC)
+            throw new IOException("Not a cart snapshot: " + file);
+        int cartCount = snapshot.getInt();
+        Map<Integer, IntIntMap> carts = new HashMap<>(cartCount * 4 / 3 + 1);
+        for (int i = 0; i < cartCount; i++)
+        {
+            int userId = snapshot.getInt();
+            int lineCount = snapshot.getInt();
+            IntIntMap lines = new IntIntMap(lineCount);
+            for (int j = 0; j < lineCount; j++)
+            {
+                lines.put(snapshot.getInt(), snapshot.getInt());
+            }
+            carts.put(userId, lines);
+        }
+        return carts;
+    }
+
+    private static void writeSnapshot(Path file, Map<Integer, IntIntMap> carts) throws IOException
+    {
+        int cartCount = 0;
+        for (IntIntMap lines : carts.values())
+        {
+            if (!lines.isEmpty())
+                cartCount++;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            CheckedOutputStream checked = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(cartCount);
+            for (Map.Entry<Integer, IntIntMap> cart : carts.entrySet())
+            {
+                IntIntMap lines = cart.getValue();
+                if (lines.isEmpty())
+                    continue;
+                out.writeInt(cart.getKey());
+                out.writeInt(lines.size());
+                for (int productId : lines.keys())
+                {
+                    out.writeInt(productId);
+                    out.writeInt(lines.get(productId, 0));
+                }
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }).sorted().toList();
+        }
+    }
+
+    private static long sequenceOf(Path file)
+    {
+        String name = file.getFileName().toString();
+        if (name.startsWith(SEGMENT_PREFIX))
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
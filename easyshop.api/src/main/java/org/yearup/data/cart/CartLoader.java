@@ -0,0 +1,10 @@
+package org.yearup.data.cart;
+
+/**
+ * Where a user's cart comes from the first time this process needs it.
+ */
+public interface CartLoader
+{
+    // the user's lines, empty when they have none
+    IntIntMap load(int userId);
+}
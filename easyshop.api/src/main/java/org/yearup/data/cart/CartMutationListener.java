@@ -0,0 +1,16 @@
+package org.yearup.data.cart;
+
+/**
+ * Told about every change to a cart, right after it is made and while the cart is still locked, so the calls
+ * for one user arrive in the order the changes happened. Implementations must be quick and must not call back
+ * into the cart store.
+ */
+public interface CartMutationListener
+{
+    // the product's line now has this quantity (new lines included)
+    void lineSet(int userId, int productId, int quantity);
+
+    void lineRemoved(int userId, int productId);
+
+    void cartCleared(int userId);
+}
@@ -0,0 +1,15 @@
+package org.yearup.data.cart;
+
+/**
+ * Carts saved by a previous run of this process, handed to the cart store once before it serves requests.
+ */
+public interface CartRecovery
+{
+    interface CartConsumer
+    {
+        void accept(int userId, IntIntMap lines);
+    }
+
+    // every saved cart that isn't empty, once
+    void recover(CartConsumer consumer);
+}
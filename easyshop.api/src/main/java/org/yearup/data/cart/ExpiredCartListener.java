@@ -0,0 +1,10 @@
+package org.yearup.data.cart;
+
+/**
+ * Told about a cart that has been idle for longer than {@code cart.expiry.idle-ttl-minutes}, just before it is
+ * evicted and while it is still locked. The lines must not be changed or kept after the call returns.
+ */
+public interface ExpiredCartListener
+{
+    void cartExpired(int userId, IntIntMap lines);
+}
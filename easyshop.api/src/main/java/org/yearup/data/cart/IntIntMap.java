@@ -0,0 +1,232 @@
+package org.yearup.data.cart;
+
+import java.util.Arrays;
+
+/**
+ * An int to int hash map without boxing, for cart lines (product id to quantity).
+ *
+ * Keys and values sit next to each other in one array and collisions are resolved by linear probing, so a
+ * lookup usually touches a single cache line. Removal shifts the following entries back instead of leaving
+ * tombstones. Key 0 marks a free slot and is kept apart. Not thread-safe.
+ */
+public final class IntIntMap
+{
+    private static final int FREE = 0;
+
+    public interface EntryConsumer
+    {
+        void accept(int key, int value);
+    }
+
+    // key, value, key, value, ...
+    private int[] slots;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntMap()
+    {
+        this(2);
+    }
+
+    public IntIntMap(int expectedSize)
+    {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private IntIntMap(IntIntMap other)
+    {
+        slots = other.slots.clone();
+        mask = other.mask;
+        size = other.size;
+        hasZeroKey = other.hasZeroKey;
+        zeroValue = other.zeroValue;
+    }
+
+    public int size()
+    {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public boolean containsKey(int key)
+    {
+        if (key == FREE)
+            return hasZeroKey;
+        return slots[indexOf(key)] == key;
+    }
+
+    public int get(int key, int defaultValue)
+    {
+        if (key == FREE)
+            return hasZeroKey ? zeroValue : defaultValue;
+        int index = indexOf(key);
+        return slots[index] == key ? slots[index + 1] : defaultValue;
+    }
+
+    public void put(int key, int value)
+    {
+        if (key == FREE)
+        {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+
+        int index = indexOf(key);
+        if (slots[index] == key)
+        {
+            slots[index + 1] = value;
+            return;
+        }
+
+        slots[index] = key;
+        slots[index + 1] = value;
+        if (++size > (mask + 1) / 2)
+            allocate((mask + 1) * 2);
+    }
+
+    /**
+     * Adds {@code delta} to the value of {@code key} (0 when absent) and returns the result.
+     */
+    public int addTo(int key, int delta)
+    {
+        int value = get(key, 0) + delta;
+        put(key, value);
+        return value;
+    }
+
+    public boolean remove(int key)
+    {
+        if (key == FREE)
+        {
+            boolean had = hasZeroKey;
+            hasZeroKey = false;
+            return had;
+        }
+
+        int index = indexOf(key);
+        if (slots[index] != key)
+            return false;
+
+        // shift back every following entry whose probe run passes through the freed slot
+        int length = slots.length;
+        int free = index;
+        int next = (free + 2) & (length - 1);
+        while (slots[next] != FREE)
+        {
+            int home = slot(slots[next]);
+            boolean movable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+            if (movable)
+            {
+                slots[free] = slots[next];
+                slots[free + 1] = slots[next + 1];
+                free = next;
+            }
+            next = (next + 2) & (length - 1);
+        }
+        slots[free] = FREE;
+        slots[free + 1] = 0;
+        size--;
+        return true;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(slots, 0);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    public IntIntMap copy()
+    {
+        return new IntIntMap(this);
+    }
+
+    public void forEach(EntryConsumer consumer)
+    {
+        if (hasZeroKey)
+            consumer.accept(FREE, zeroValue);
+        for (int i = 0; i < slots.length; i += 2)
+        {
+            if (slots[i] != FREE)
+                consumer.accept(slots[i], slots[i + 1]);
+        }
+    }
+
+    public int[] keys()
+    {
+        int[] keys = new int[size()];
+        int n = 0;
+        if (hasZeroKey)
+            keys[n++] = FREE;
+        for (int i = 0; i < slots.length; i += 2)
+        {
+            if (slots[i] != FREE)
+                keys[n++] = slots[i];
+        }
+        return keys;
+    }
+
+    /**
+     * Heap held by this map: the object plus its slot array, on a 64-bit JVM with compressed references.
+     */
+    public long estimatedBytes()
+    {
+        return 32 + ((16 + 4L * slots.length + 7) & ~7L);
+    }
+
+    // the slot holding key, or the free slot where it would go
+    private int indexOf(int key)
+    {
+        int index = slot(key);
+        while (slots[index] != FREE && slots[index] != key)
+        {
+            index = (index + 2) & (slots.length - 1);
+        }
+        return index;
+    }
+
+    private int slot(int key)
+    {
+        // Fibonacci hashing spreads sequential ids across the table
+        int hash = key * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & mask) << 1;
+    }
+
+    private void allocate(int capacity)
+    {
+        int[] old = slots;
+        slots = new int[capacity * 2];
+        mask = capacity - 1;
+        size = 0;
+        if (old == null)
+            return;
+
+        for (int i = 0; i < old.length; i += 2)
+        {
+            if (old[i] != FREE)
+            {
+                int index = indexOf(old[i]);
+                slots[index] = old[i];
+                slots[index + 1] = old[i + 1];
+                size++;
+            }
+        }
+    }
+
+    private static int capacityFor(int expectedSize)
+    {
+        int capacity = 2;
+        while (capacity / 2 < expectedSize)
+        {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,167 @@
+package org.yearup.data.cart;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: timers that fire after their deadline, to the nearest tick.
+ *
+ * Each level has 64 buckets; a bucket at level 0 covers one tick, one at level 1 covers 64 ticks, and so on. A timer
+ * goes into the bucket of the level whose range covers its deadline, so scheduling, rescheduling and cancelling are
+ * O(1) (timers are linked into their bucket, nothing is searched). As time passes, the level-0 bucket of each tick
+ * fires and, every 64 ticks, the next bucket of the level above is spread over the level below. Deadlines beyond
+ * the top level wait in its furthest bucket and are placed again when it is reached.
+ *
+ * Not thread-safe.
+ */
+public final class TimingWheel<T>
+{
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    public static final class Timer<T>
+    {
+        private final T value;
+        private long deadlineTick;
+        private int bucket = -1;
+        private Timer<T> previous;
+        private Timer<T> next;
+
+        private Timer(T value)
+        {
+            this.value = value;
+        }
+
+        public T getValue()
+        {
+            return value;
+        }
+
+        public boolean isScheduled()
+        {
+            return bucket >= 0;
+        }
+    }
+
+    private final long tickMillis;
+    private final int levels;
+    private final long maxTicks;
+    // bucket heads, level by level
+    private final Timer<T>[] buckets;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, int levels, long nowMillis)
+    {
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.maxTicks = (1L << (SLOT_BITS * levels)) - 1;
+        this.buckets = new Timer[levels * SLOTS];
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public Timer<T> newTimer(T value)
+    {
+        return new Timer<>(value);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Sets the timer to fire at {@code deadlineMillis}, replacing its previous deadline if it had one.
+     */
+    public void schedule(Timer<T> timer, long deadlineMillis)
+    {
+        cancel(timer);
+        // round up, so a timer never fires before its deadline; what is already due fires on the next tick
+        timer.deadlineTick = Math.max(currentTick + 1, (deadlineMillis + tickMillis - 1) / tickMillis);
+        place(timer);
+        size++;
+    }
+
+    public void cancel(Timer<T> timer)
+    {
+        if (timer.bucket < 0)
+            return;
+        unlink(timer);
+        size--;
+    }
+
+    /**
+     * Moves the wheel on to {@code nowMillis}, handing the value of every timer that became due to {@code expired}.
+     * Fired timers are no longer scheduled.
+     */
+    public void advance(long nowMillis, Consumer<T> expired)
+    {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick)
+        {
+            currentTick++;
+            // the higher levels first, so their timers can drop all the way down to this tick
+            for (int level = levels - 1; level >= 1; level--)
+            {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0)
+                    cascade(level * SLOTS + (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+            }
+
+            int bucket = (int) (currentTick & (SLOTS - 1));
+            while (buckets[bucket] != null)
+            {
+                Timer<T> timer = buckets[bucket];
+                unlink(timer);
+                size--;
+                expired.accept(timer.value);
+            }
+        }
+    }
+
+    private void cascade(int bucket)
+    {
+        Timer<T> timer = buckets[bucket];
+        buckets[bucket] = null;
+        while (timer != null)
+        {
+            Timer<T> next = timer.next;
+            timer.bucket = -1;
+            timer.previous = null;
+            timer.next = null;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    private void place(Timer<T> timer)
+    {
+        long delta = Math.min(timer.deadlineTick - currentTick, maxTicks);
+        long tick = currentTick + delta;
+        int level = 0;
+        while (level < levels - 1 && delta >= 1L << (SLOT_BITS * (level + 1)))
+        {
+            level++;
+        }
+        int bucket = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+
+        timer.bucket = bucket;
+        timer.previous = null;
+        timer.next = buckets[bucket];
+        if (timer.next != null)
+            timer.next.previous = timer;
+        buckets[bucket] = timer;
+    }
+
+    private void unlink(Timer<T> timer)
+    {
+        if (timer.previous != null)
+            timer.previous.next = timer.next;
+        else
+            buckets[timer.bucket] = timer.next;
+        if (timer.next != null)
+            timer.next.previous = timer.previous;
+        timer.bucket = -1;
+        timer.previous = null;
+        timer.next = null;
+    }
+}
@@ -0,0 +1,395 @@
+package org.yearup.data.mysql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.yearup.data.cart.CartLoader;
+import org.yearup.data.cart.CartMutationListener;
+import org.yearup.data.cart.IntIntMap;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Persists carts to the {@code shopping_cart} table behind the in-memory store.
+ *
+ * Changes are only recorded here, with the last quantity for a (user, product) replacing earlier ones, and
+ * written in batches every {@code cart.write-behind.flush-interval-ms} or as soon as
+ * {@code cart.write-behind.batch-size} lines are waiting. Cleared carts are deleted before the lines written
+ * after the clear are upserted. A flush that can't reach MySQL is put back and retried; a batch MySQL rejects is
+ * written again row by row and only the rejected rows (e.g. a product that has since been deleted) are dropped.
+ * Whatever is still waiting is written on shutdown.
+ *
+ * Loading a cart overlays the changes that haven't reached MySQL yet, so a cart read back before its flush is
+ * still current.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.write-behind.enabled", havingValue = "true")
+public class MySqlCartWriteBehind extends MySqlDaoBase implements CartMutationListener, CartLoader
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MySqlCartWriteBehind.class);
+    private static final int REMOVED = -1;
+    private static final int DRAIN_ATTEMPTS = 3;
+
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // guarded by this
+    private Changes pending = new Changes();
+    private Changes inFlight;
+    private long flushes;
+
+    // only touched by the thread that is flushing
+    private boolean failing;
+
+    // what is waiting to be written: users whose cart was cleared, then line quantities (REMOVED for deletes)
+    private static final class Changes
+    {
+        final Set<Integer> cleared = new HashSet<>();
+        final Map<Integer, Map<Integer, Integer>> lines = new HashMap<>();
+        int lineCount;
+
+        void set(int userId, int productId, int quantity)
+        {
+            if (lines.computeIfAbsent(userId, id -> new HashMap<>()).put(productId, quantity) == null)
+                lineCount++;
+        }
+
+        void clear(int userId)
+        {
+            Map<Integer, Integer> dropped = lines.remove(userId);
+            if (dropped != null)
+                lineCount -= dropped.size();
+            cleared.add(userId);
+        }
+
+        boolean isEmpty()
+        {
+            return cleared.isEmpty() && lines.isEmpty();
+        }
+
+        void applyTo(int userId, IntIntMap cart)
+        {
+            if (cleared.contains(userId))
+                cart.clear();
+            Map<Integer, Integer> userLines = lines.get(userId);
+            if (userLines != null)
+            {
+                userLines.forEach((productId, quantity) -> {
+                    if (quantity == REMOVED)
+                        cart.remove(productId);
+                    else
+                        cart.put(productId, quantity);
+                });
+            }
+        }
+    }
+
+    @Autowired
+    public MySqlCartWriteBehind(DataSource dataSource,
+                                @Value("${cart.write-behind.batch-size:500}") int batchSize,
+                                @Value("${cart.write-behind.flush-interval-ms:1000}") long flushIntervalMs)
+    {
+        super(dataSource);
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void lineSet(int userId, int productId, int quantity)
+    {
+        record(changes -> changes.set(userId, productId, quantity));
+    }
+
+    @Override
+    public void lineRemoved(int userId, int productId)
+    {
+        record(changes -> changes.set(userId, productId, REMOVED));
+    }
+
+    @Override
+    public void cartCleared(int userId)
+    {
+        record(changes -> changes.clear(userId));
+    }
+
+    @Override
+    public IntIntMap load(int userId)
+    {
+        while (true)
+        {
+            long flushesBefore;
+            synchronized (this)
+            {
+                flushesBefore = flushes;
+            }
+
+            IntIntMap cart = select(userId);
+
+            synchronized (this)
+            {
+                // a flush that finished while we were reading may be in the rows or not; read again
+                if (flushes != flushesBefore)
+                    continue;
+                if (inFlight != null)
+                    inFlight.applyTo(userId, cart);
+                pending.applyTo(userId, cart);
+                return cart;
+            }
+        }
+    }
+
+    /**
+     * Writes everything recorded so far. Returns {@code false} when MySQL could not be reached; the changes are
+     * then kept for the next attempt.
+     */
+    public boolean flush()
+    {
+        Changes batch;
+        synchronized (this)
+        {
+            if (inFlight != null || pending.isEmpty())
+                return true;
+            batch = pending;
+            inFlight = batch;
+            pending = new Changes();
+        }
+
+        boolean written = false;
+        try
+        {
+            write(batch);
+            written = true;
+            if (failing)
+                LOG.info("Cart write-behind is writing to MySQL again");
+            failing = false;
+        }
+        catch (SQLException e)
+        {
+            if (!failing)
+                LOG.error("Cart write-behind could not write {} cart lines; will retry", batch.lineCount, e);
+            failing = true;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                inFlight = null;
+                if (!written)
+                    pending = merge(batch, pending);
+                flushes++;
+            }
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        flusher.shutdown();
+        try
+        {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int attempt = 0; attempt < DRAIN_ATTEMPTS; attempt++)
+        {
+            if (flush() && isDrained())
+                return;
+        }
+        synchronized (this)
+        {
+            LOG.error("Cart write-behind lost {} cart lines and {} cleared carts at shutdown",
+                    pending.lineCount, pending.cleared.size());
+        }
+    }
+
+    private synchronized boolean isDrained()
+    {
+        return pending.isEmpty();
+    }
+
+    private void record(Consumer<Changes> change)
+    {
+        boolean full;
+        synchronized (this)
+        {
+            change.accept(pending);
+            full = pending.lineCount >= batchSize;
+        }
+        if (full && flushRequested.compareAndSet(false, true))
+            flusher.execute(this::flushQuietly);
+    }
+
+    private void flushQuietly()
+    {
+        flushRequested.set(false);
+        try
+        {
+            flush();
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Cart write-behind flush failed", e);
+        }
+    }
+
+    // newer changes win; a clear in the newer batch makes the older lines of that user irrelevant
+    private static Changes merge(Changes older, Changes newer)
+    {
+        Changes merged = new Changes();
+        merged.cleared.addAll(older.cleared);
+        older.lines.forEach((userId, lines) -> {
+            if (!newer.cleared.contains(userId))
+                lines.forEach((productId, quantity) -> merged.set(userId, productId, quantity));
+        });
+        merged.cleared.addAll(newer.cleared);
+        newer.lines.forEach((userId, lines) -> lines.forEach((productId, quantity) -> merged.set(userId, productId, quantity)));
+        return merged;
+    }
+
+    private IntIntMap select(int userId)
+    {
+        String sql = "SELECT product_id, quantity FROM shopping_cart WHERE user_id = ?";
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, userId);
+            try (ResultSet row = statement.executeQuery())
+            {
+                IntIntMap cart = new IntIntMap();
+                while (row.next())
+                {
+                    cart.put(row.getInt("product_id"), row.getInt("quantity"));
+                }
+                return cart;
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void write(Changes batch) throws SQLException
+    {
+        List<int[]> cleared = new ArrayList<>(batch.cleared.size());
+        List<int[]> upserts = new ArrayList<>();
+        List<int[]> deletes = new ArrayList<>();
+        for (int userId : batch.cleared)
+        {
+            cleared.add(new int[] { userId });
+        }
+        for (Map.Entry<Integer, Map<Integer, Integer>> user : batch.lines.entrySet())
+        {
+            for (Map.Entry<Integer, Integer> line : user.getValue().entrySet())
+            {
+                if (line.getValue() == REMOVED)
+                    deletes.add(new int[] { user.getKey(), line.getKey() });
+                else
+                    upserts.add(new int[] { user.getKey(), line.getKey(), line.getValue() });
+            }
+        }
+
+        try (Connection connection = getConnection())
+        {
+            executeBatch(connection, "DELETE FROM shopping_cart WHERE user_id = ?", cleared, "cleared carts");
+            executeBatch(connection, "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?) " +
+                                     "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)", upserts, "cart lines");
+            executeBatch(connection, "DELETE FROM shopping_cart WHERE user_id = ? AND product_id = ?", deletes,
+                    "removed cart lines");
+        }
+    }
+
+    // with rewriteBatchedStatements one bad row fails the whole multi-row statement, so a rejected batch is
+    // replayed row by row; rows MySQL rejects would fail every retry, so only those are logged and dropped
+    static void executeBatch(Connection connection, String sql, List<int[]> rows, String what) throws SQLException
+    {
+        if (rows.isEmpty())
+            return;
+
+        try (PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            for (int[] row : rows)
+            {
+                bind(statement, row);
+                statement.addBatch();
+            }
+            try
+            {
+                statement.executeBatch();
+                return;
+            }
+            catch (BatchUpdateException e)
+            {
+                if (isConnectionError(e))
+                    throw e;
+            }
+
+            // each row is an upsert or a delete, so writing one again that the batch already wrote is harmless
+            int dropped = 0;
+            SQLException first = null;
+            for (int[] row : rows)
+            {
+                try
+                {
+                    bind(statement, row);
+                    statement.executeUpdate();
+                }
+                catch (SQLException e)
+                {
+                    if (isConnectionError(e))
+                        throw e;
+                    dropped++;
+                    if (first == null)
+                        first = e;
+                }
+            }
+            if (dropped > 0)
+                LOG.warn("Dropped {} of {} {} that MySQL rejected", dropped, rows.size(), what, first);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, int[] row) throws SQLException
+    {
+        for (int i = 0; i < row.length; i++)
+        {
+            statement.setInt(i + 1, row[i]);
+        }
+    }
+
+    // a lost connection is worth retrying
+    private static boolean isConnectionError(SQLException e)
+    {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+}
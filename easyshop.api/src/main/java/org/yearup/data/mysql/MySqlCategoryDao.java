@@ -1,10 +1,13 @@
 package org.yearup.data.mysql;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 import org.yearup.controllers.CategoriesController;
+import org.yearup.data.CategoryChangedEvent;
 import org.yearup.data.CategoryDao;
 import org.yearup.models.Category;
+import org.yearup.models.Product;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -17,9 +20,12 @@ import java.util.List;
 @Repository
 public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
 {
-    public MySqlCategoryDao(DataSource dataSource)
+    private final ApplicationEventPublisher eventPublisher;
+
+    public MySqlCategoryDao(DataSource dataSource, ApplicationEventPublisher eventPublisher)
     {
         super(dataSource);
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -88,6 +94,46 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
     }
 
 
+    @Override
+    public Category getByIdWithProducts(int categoryId) {
+        // category columns are renamed so the product columns keep the names MySqlProductDao.mapRow expects
+        String sql = """
+       SELECT c.category_id AS c_category_id,
+              c.name AS c_name,
+              c.description AS c_description,
+              p.*
+         FROM categories c
+         LEFT JOIN products p ON p.category_id = c.category_id
+        WHERE c.category_id = ?
+        ORDER BY p.product_id""";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, categoryId);
+
+            try (ResultSet row = statement.executeQuery()) {
+                Category category = null;
+                List<Product> products = new ArrayList<>();
+                while (row.next()) {
+                    if (category == null)
+                        category = new Category(row.getInt("c_category_id"), row.getString("c_name"), row.getString("c_description"));
+
+                    // a category without products comes back as one row of NULL product columns
+                    row.getInt("product_id");
+                    if (!row.wasNull())
+                        products.add(MySqlProductDao.mapRow(row));
+                }
+
+                if (category != null)
+                    category.setProducts(products);
+                return category;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Error retrieving category with products: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public Category create(Category category) {
         String sql = "INSERT INTO categories (name, description) VALUES (?, ?)";
@@ -103,6 +149,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
                     if (generatedKeys.next()) {
                         int id = generatedKeys.getInt(1);
                         category.setCategoryId(id); // Set the new ID on the category object
+                        eventPublisher.publishEvent(new CategoryChangedEvent(CategoryChangedEvent.Type.CREATED, id, category));
                     }
                 }
             }
@@ -122,7 +169,10 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
             statement.setString(2, category.getDescription());
             statement.setInt(3, categoryId); // The ID from the path variable
 
-            statement.executeUpdate(); // Execute the update
+            if (statement.executeUpdate() > 0) { // Execute the update
+                Category updated = new Category(categoryId, category.getName(), category.getDescription());
+                eventPublisher.publishEvent(new CategoryChangedEvent(CategoryChangedEvent.Type.UPDATED, categoryId, updated));
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException("Error updating category: " + e.getMessage(), e);
@@ -136,7 +186,9 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
              PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, categoryId); // Set the parameter
 
-            statement.executeUpdate(); // Execute the delete
+            if (statement.executeUpdate() > 0) { // Execute the delete
+                eventPublisher.publishEvent(new CategoryChangedEvent(CategoryChangedEvent.Type.DELETED, categoryId, null));
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException("Error deleting category: " + e.getMessage(), e);
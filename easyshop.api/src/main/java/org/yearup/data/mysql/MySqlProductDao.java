@@ -1,7 +1,17 @@
 package org.yearup.data.mysql;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpServerErrorException;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.data.ProductsCreatedEvent;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductField;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
+import org.yearup.data.search.TextAnalyzer;
 import org.yearup.models.Product;
 import org.yearup.data.ProductDao;
 
@@ -9,20 +19,87 @@ import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 @Component
 public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
+    private static final int ID_CHUNK_SIZE = 500;
+
+    private ApplicationEventPublisher eventPublisher;
+    private int streamFetchSize;
+
     public MySqlProductDao(DataSource dataSource) {
         super(dataSource);
     }
 
+    @Autowired
+    public MySqlProductDao(DataSource dataSource, ApplicationEventPublisher eventPublisher,
+                           @Value("${products.stream.fetch-size:0}") int streamFetchSize) {
+        super(dataSource);
+        this.eventPublisher = eventPublisher;
+        this.streamFetchSize = streamFetchSize;
+    }
+
     @Override
-    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color) {
+    public List<Product> search(ProductQuery query) {
         List<Product> products = new ArrayList<>();
 
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepareSearch(connection, query);
+
+            ResultSet row = statement.executeQuery();
+            Set<ProductField> columns = query.getRequiredFields();
+
+            while (row.next()) {
+                Product product = mapRow(row, columns);
+                products.add(product);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error: " + e.getMessage(), e);
+        }
+
+        return products;
+    }
+
+    @Override
+    public void stream(ProductQuery query, Consumer<Product> consumer) {
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = prepareSearch(connection, query);
+            // Integer.MIN_VALUE tells Connector/J to hand rows over one at a time instead of buffering the
+            // whole result; a positive fetch size uses a server-side cursor (needs useCursorFetch=true)
+            statement.setFetchSize(streamFetchSize > 0 ? streamFetchSize : Integer.MIN_VALUE);
+
+            Set<ProductField> columns = query.getRequiredFields();
+            try (ResultSet row = statement.executeQuery()) {
+                while (row.next()) {
+                    consumer.accept(mapRow(row, columns));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database error: " + e.getMessage(), e);
+        }
+    }
+
+    private PreparedStatement prepareSearch(Connection connection, ProductQuery query) throws SQLException {
+        Integer categoryId = query.getCategoryId();
+        BigDecimal minPrice = query.getMinPrice();
+        BigDecimal maxPrice = query.getMaxPrice();
+        String color = query.getColor();
+        List<String> terms = query.getText() == null ? Collections.emptyList() : TextAnalyzer.terms(query.getText());
+
         // Start with a base query
-        String sql = "SELECT * FROM products WHERE 1=1"; // is 1 equal to 1? Basically always true!
+        // Only the requested columns are selected, so list views don't drag every description along
+        String sql = "SELECT " + selectList(query.getRequiredFields()) + " FROM products WHERE 1=1"; // is 1 equal to 1? Basically always true!
 
         // Dynamically build the query
         // "?" is a placeholder, we don't know what the user will search for
@@ -36,45 +113,107 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
             sql += " AND price <= ?";
         if (color != null)
             sql += " AND color = ?";
+        // Text search is normally answered by ProductTextIndex; this is the slow fallback when it is off.
+        // Terms are letters and digits only, so they can't contain LIKE wildcards
+        if (query.getText() != null) {
+            StringJoiner anyTerm = new StringJoiner(" OR ", " AND (", ")");
+            anyTerm.add("1=0"); // no terms at all matches nothing
+            for (int i = 0; i < terms.size(); i++)
+                anyTerm.add("name LIKE ? OR description LIKE ?");
+            sql += anyTerm;
+        }
 
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(sql);
-            int paramIndex = 1;
-            // Start counting from 1 because SQL placeholders (?) are 1-based in PreparedStatement
+        // Paging uses a keyset (seek) predicate instead of OFFSET: "rows after the last one you saw".
+        // The (sort column, product_id) pair is unique, so page 100 costs the same as page 1.
+        ProductSort sort = query.getEffectiveSort();
+        String direction = query.isDescending() ? "DESC" : "ASC";
+        String comparison = query.isDescending() ? "<" : ">";
+        ProductCursor after = query.getAfter();
+
+        if (after != null) {
+            if (sort == ProductSort.ID)
+                sql += " AND product_id " + comparison + " ?";
+            else
+                sql += " AND " + seekAfter(sort.getSortKey(), after.getLastValue() == null, query.isDescending());
+        }
+        if (query.isPaged()) {
+            sql += " ORDER BY " + (sort == ProductSort.ID ? "" : sort.getSortKey() + " " + direction + ", ") + "product_id " + direction;
+        }
+        if (query.getLimit() != null)
+            sql += " LIMIT ?";
 
-            if (categoryId != null)
-                // If categoryId has a value (is not empty), set the next ? in the SQL to that value
-                // setInt is used because categoryId is an integer
-                statement.setInt(paramIndex++, categoryId);
+        // forward-only, read-only is what lets the driver stream rows
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        int paramIndex = 1;
+        // Start counting from 1 because SQL placeholders (?) are 1-based in PreparedStatement
 
-            if (minPrice != null)
-                // If minPrice has a value, set the next ? in the SQL to that value
-                // setBigDecimal is used for decimal numbers like prices
-                statement.setBigDecimal(paramIndex++, minPrice);
+        if (categoryId != null)
+            // If categoryId has a value (is not empty), set the next ? in the SQL to that value
+            // setInt is used because categoryId is an integer
+            statement.setInt(paramIndex++, categoryId);
 
-            if (maxPrice != null)
-                // If maxPrice has a value, set the next ? in the SQL to that value
-                // This fills in the next ? with the maximum price
-                statement.setBigDecimal(paramIndex++, maxPrice);
+        if (minPrice != null)
+            // If minPrice has a value, set the next ? in the SQL to that value
+            // setBigDecimal is used for decimal numbers like prices
+            statement.setBigDecimal(paramIndex++, minPrice);
 
-            if (color != null)
-                // If color has a value, set the next ? in the SQL to that value
-                // setString is used because color is a text value
-                statement.setString(paramIndex++, color);
+        if (maxPrice != null)
+            // If maxPrice has a value, set the next ? in the SQL to that value
+            // This fills in the next ? with the maximum price
+            statement.setBigDecimal(paramIndex++, maxPrice);
 
+        if (color != null)
+            // If color has a value, set the next ? in the SQL to that value
+            // setString is used because color is a text value
+            statement.setString(paramIndex++, color);
 
-            ResultSet row = statement.executeQuery();
+        for (String term : terms) {
+            statement.setString(paramIndex++, "%" + term + "%");
+            statement.setString(paramIndex++, "%" + term + "%");
+        }
 
-            while (row.next()) {
-                Product product = mapRow(row);
-                products.add(product);
+        if (after != null) {
+            if (sort != ProductSort.ID && after.getLastValue() != null) {
+                setSortValue(statement, paramIndex++, sort, after.getLastValue());
+                setSortValue(statement, paramIndex++, sort, after.getLastValue());
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Database error: " + e.getMessage(), e);
+            statement.setInt(paramIndex++, after.getLastProductId());
         }
 
-        return products;
+        if (query.getLimit() != null)
+            statement.setInt(paramIndex++, query.getLimit());
+
+        return statement;
+    }
+
+    private static String selectList(Set<ProductField> columns) {
+        if (columns == null)
+            return "*";
+
+        StringJoiner list = new StringJoiner(", ");
+        for (ProductField column : columns) {
+            list.add(column.getColumn());
+        }
+        return list.toString();
+    }
+
+    // "rows after (value, product_id)": MySQL puts NULLs first ascending and last descending
+    private static String seekAfter(String key, boolean afterNull, boolean descending) {
+        String comparison = descending ? "<" : ">";
+        if (afterNull) {
+            return descending
+                    ? "(" + key + " IS NULL AND product_id < ?)"
+                    : "(" + key + " IS NOT NULL OR product_id > ?)";
+        }
+        return "(" + key + " " + comparison + " ? OR (" + key + " = ? AND product_id " + comparison + " ?)"
+                + (descending ? " OR " + key + " IS NULL)" : ")");
+    }
+
+    private static void setSortValue(PreparedStatement statement, int index, ProductSort sort, String value) throws SQLException {
+        if (sort == ProductSort.PRICE)
+            statement.setBigDecimal(index, new BigDecimal(value));
+        else
+            statement.setString(index, value);
     }
 
     @Override
@@ -101,6 +240,23 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
         return products;
     }
 
+    @Override
+    public int countByCategoryId(int categoryId) {
+        String sql = "SELECT COUNT(*) FROM products WHERE category_id = ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, categoryId);
+
+            try (ResultSet row = statement.executeQuery()) {
+                row.next();
+                return row.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 
     @Override
     public Product getById(int productId) {
@@ -120,6 +276,43 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
         return null;
     }
 
+    @Override
+    public List<Product> getByIds(Collection<Integer> productIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        Map<Integer, Product> found = new HashMap<>();
+
+        // one IN (...) query per chunk keeps the statement size and the server's parse cost bounded
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT * FROM products WHERE product_id IN (" + placeholders + ")";
+
+            try (Connection connection = getConnection()) {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setInt(i + 1, chunk.get(i));
+                }
+
+                ResultSet row = statement.executeQuery();
+
+                while (row.next()) {
+                    Product product = mapRow(row);
+                    found.put(product.getProductId(), product);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        List<Product> products = new ArrayList<>(found.size());
+        for (Integer id : ids) {
+            Product product = found.get(id);
+            if (product != null)
+                products.add(product);
+        }
+        return products;
+    }
+
     @Override
     public Product create(Product product) {
 
@@ -148,7 +341,9 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
                     int orderId = generatedKeys.getInt(1);
 
                     // get the newly inserted category
-                    return getById(orderId);
+                    Product created = getById(orderId);
+                    publish(ProductChangedEvent.Type.CREATED, orderId, created);
+                    return created;
                 }
             }
         } catch (SQLException e) {
@@ -157,6 +352,79 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
         return null;
     }
 
+    @Override
+    public List<String> createAll(List<Product> products) {
+        List<String> errors = new ArrayList<>(Collections.nCopies(products.size(), (String) null));
+        if (products.isEmpty())
+            return errors;
+
+        String sql = "INSERT INTO products(name, price, category_id, description, color, image_url, stock, featured) " +
+                " VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+
+        try (Connection connection = getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                // with rewriteBatchedStatements the driver sends the whole batch as multi-row INSERTs
+                PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+                for (Product product : products) {
+                    bindInsert(statement, product);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                ResultSet generatedKeys = statement.getGeneratedKeys();
+                int index = 0;
+                while (generatedKeys.next() && index < products.size()) {
+                    products.get(index++).setProductId(generatedKeys.getInt(1));
+                }
+                connection.commit();
+            } catch (SQLException batchError) {
+                // one bad row fails the whole multi-row INSERT; redo this chunk row by row to find it
+                connection.rollback();
+                for (int i = 0; i < products.size(); i++) {
+                    try {
+                        PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+                        bindInsert(statement, products.get(i));
+                        statement.executeUpdate();
+
+                        ResultSet generatedKeys = statement.getGeneratedKeys();
+                        if (generatedKeys.next())
+                            products.get(i).setProductId(generatedKeys.getInt(1));
+                    } catch (SQLException rowError) {
+                        errors.set(i, rowError.getMessage());
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        // one event for the whole chunk, not one per row
+        List<Product> created = new ArrayList<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            if (errors.get(i) == null)
+                created.add(products.get(i));
+        }
+        if (eventPublisher != null && !created.isEmpty())
+            eventPublisher.publishEvent(new ProductsCreatedEvent(created));
+        return errors;
+    }
+
+    private static void bindInsert(PreparedStatement statement, Product product) throws SQLException {
+        statement.setString(1, product.getName());
+        statement.setBigDecimal(2, product.getPrice());
+        statement.setInt(3, product.getCategoryId());
+        statement.setString(4, product.getDescription());
+        statement.setString(5, product.getColor());
+        statement.setString(6, product.getImageUrl());
+        statement.setInt(7, product.getStock());
+        statement.setBoolean(8, product.isFeatured());
+    }
+
     @Override
     public void update(int productId, Product product) {
         String sql = "UPDATE products" +
@@ -182,7 +450,12 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
             statement.setBoolean(8, product.isFeatured());
             statement.setInt(9, productId);
 
-            statement.executeUpdate();
+            if (statement.executeUpdate() > 0) {
+                // publish the stored row, e.g. with the price rounded to DECIMAL(10,2), not the request body
+                Product updated = getById(productId);
+                if (updated != null)
+                    publish(ProductChangedEvent.Type.UPDATED, productId, updated);
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -191,17 +464,73 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
     @Override
     public void delete(int productId) {
 
+        // shopping_cart rows reference the product, so they go in the same transaction
+        String cartSql = "DELETE FROM shopping_cart " +
+                " WHERE product_id = ?;";
         String sql = "DELETE FROM products " +
                 " WHERE product_id = ?;";
 
+        boolean deleted;
         try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setInt(1, productId);
-
-            statement.executeUpdate();
+            // both deletes run in one transaction: the caller's when one is open, otherwise a new one committed here
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit)
+                connection.setAutoCommit(false);
+            try {
+                PreparedStatement cartStatement = connection.prepareStatement(cartSql);
+                cartStatement.setInt(1, productId);
+                cartStatement.executeUpdate();
+
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setInt(1, productId);
+                deleted = statement.executeUpdate() > 0;
+
+                if (autoCommit)
+                    connection.commit();
+            } catch (SQLException e) {
+                if (autoCommit)
+                    connection.rollback();
+                throw e;
+            } finally {
+                if (autoCommit)
+                    connection.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+
+        if (deleted) {
+            publish(ProductChangedEvent.Type.DELETED, productId, null);
+        }
+    }
+
+    // let caches and in-memory indexes know the catalog changed
+    private void publish(ProductChangedEvent.Type type, int productId, Product product) {
+        if (eventPublisher != null) {
+            eventPublisher.publishEvent(new ProductChangedEvent(type, productId, product));
+        }
+    }
+
+    // reads only the given columns; the rest of the product keeps its default values
+    protected static Product mapRow(ResultSet row, Set<ProductField> columns) throws SQLException {
+        if (columns == null)
+            return mapRow(row);
+
+        Product product = new Product();
+        for (ProductField column : columns) {
+            switch (column) {
+                case PRODUCT_ID -> product.setProductId(row.getInt("product_id"));
+                case NAME -> product.setName(row.getString("name"));
+                case PRICE -> product.setPrice(row.getBigDecimal("price"));
+                case CATEGORY_ID -> product.setCategoryId(row.getInt("category_id"));
+                case DESCRIPTION -> product.setDescription(row.getString("description"));
+                case COLOR -> product.setColor(row.getString("color"));
+                case STOCK -> product.setStock(row.getInt("stock"));
+                case FEATURED -> product.setFeatured(row.getBoolean("featured"));
+                case IMAGE_URL -> product.setImageUrl(row.getString("image_url"));
+            }
+        }
+        return product;
     }
 
     protected static Product mapRow(ResultSet row) throws SQLException {
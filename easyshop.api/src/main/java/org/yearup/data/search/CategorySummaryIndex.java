@@ -0,0 +1,147 @@
+package org.yearup.data.search;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.CategorySummary;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-category product count, in-stock count and price range, kept current on every product write so
+ * {@code GET /categories} can show them without touching the products table.
+ *
+ * Prices are kept as a sorted multiset per category, so deleting the cheapest product moves the minimum to
+ * the next one instead of forcing a rescan.
+ */
+@Component
+public class CategorySummaryIndex implements ProductIndex
+{
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private final Map<Integer, Totals> totals = new HashMap<>();
+    private final Map<Integer, Placement> placements = new HashMap<>();
+
+    // what a product contributed, so a write can take it back out
+    private record Placement(int categoryId, BigDecimal price, boolean inStock) { }
+
+    private static final class Totals
+    {
+        int count;
+        int inStock;
+        final TreeMap<BigDecimal, Integer> prices = new TreeMap<>();
+
+        void add(Placement placement)
+        {
+            count++;
+            if (placement.inStock())
+                inStock++;
+            if (placement.price() != null)
+                prices.merge(placement.price(), 1, Integer::sum);
+        }
+
+        void remove(Placement placement)
+        {
+            count--;
+            if (placement.inStock())
+                inStock--;
+            if (placement.price() != null)
+                prices.computeIfPresent(placement.price(), (price, n) -> n == 1 ? null : n - 1);
+        }
+
+        CategorySummary toSummary()
+        {
+            return new CategorySummary(count, inStock,
+                    prices.isEmpty() ? null : prices.firstKey(),
+                    prices.isEmpty() ? null : prices.lastKey());
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return "category summary";
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    @Override
+    public void rebuild(List<Product> products)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            totals.clear();
+            placements.clear();
+            for (Product product : products)
+            {
+                add(product);
+            }
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(ProductChangedEvent event)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Placement old = placements.remove(event.getProductId());
+            if (old != null)
+            {
+                Totals category = totals.get(old.categoryId());
+                category.remove(old);
+                if (category.count == 0)
+                    totals.remove(old.categoryId());
+            }
+
+            if (event.getProduct() != null)
+                add(event.getProduct());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The summary of one category; a category without products gets zero counts.
+     */
+    public CategorySummary summary(int categoryId)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Totals category = totals.get(categoryId);
+            return category == null ? new CategorySummary() : category.toSummary();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Product product)
+    {
+        // TreeMap compares keys with compareTo, so 10.0 and 10.00 count as the same price
+        Placement placement = new Placement(product.getCategoryId(), product.getPrice(), product.getStock() > 0);
+        placements.put(product.getProductId(), placement);
+        totals.computeIfAbsent(product.getCategoryId(), id -> new Totals()).add(placement);
+    }
+}
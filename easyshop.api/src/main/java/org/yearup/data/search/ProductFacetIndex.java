@@ -0,0 +1,254 @@
+package org.yearup.data.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+import org.yearup.models.ProductFacets;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet counts for {@code GET /products/facets}.
+ *
+ * Products are counted into cells keyed by (category, color, price band). A facet query adds up cells, so its
+ * cost depends on the number of distinct combinations, not on the number of products. A write moves one
+ * product from its old cell to its new one. Each cell also keeps its prices as a sorted multiset, which
+ * counts exactly when a minPrice/maxPrice filter does not fall on a band edge.
+ */
+@Component
+public class ProductFacetIndex implements ProductIndex
+{
+    private static final int NO_COLOR = -1;
+    private static final int UNKNOWN_COLOR = -2;
+
+    private final BigDecimal[] bandEdges;
+    private final long[] bandEdgeCents;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private final Map<Cell, Counts> cells = new HashMap<>();
+    private final Map<Integer, Placement> placements = new HashMap<>();
+    private final Map<String, Integer> colorCodes = new HashMap<>();
+    private final List<String> colorNames = new ArrayList<>();
+
+    private record Cell(int categoryId, int color, int band) { }
+
+    private record Placement(Cell cell, long cents) { }
+
+    private static final class Counts
+    {
+        int count;
+        final TreeMap<Long, Integer> prices = new TreeMap<>();
+
+        void add(long cents)
+        {
+            count++;
+            prices.merge(cents, 1, Integer::sum);
+        }
+
+        void remove(long cents)
+        {
+            count--;
+            prices.computeIfPresent(cents, (price, n) -> n == 1 ? null : n - 1);
+        }
+
+        int between(long min, long max)
+        {
+            // subMap rejects an empty range the wrong way round
+            if (min > max)
+                return 0;
+
+            int total = 0;
+            for (int n : prices.subMap(min, true, max, true).values())
+            {
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    @Autowired
+    public ProductFacetIndex(@Value("${products.facets.price-bands:25,50,100,250,500}") BigDecimal[] bandEdges)
+    {
+        this.bandEdges = bandEdges.clone();
+        this.bandEdgeCents = new long[bandEdges.length];
+        for (int i = 0; i < bandEdges.length; i++)
+        {
+            bandEdgeCents[i] = SqlValues.toCents(bandEdges[i], RoundingMode.HALF_UP);
+            if (i > 0 && bandEdgeCents[i] <= bandEdgeCents[i - 1])
+                throw new IllegalArgumentException("products.facets.price-bands must be in ascending order.");
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return "product facets";
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    @Override
+    public void rebuild(List<Product> products)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            cells.clear();
+            placements.clear();
+            colorCodes.clear();
+            colorNames.clear();
+            for (Product product : products)
+            {
+                add(product);
+            }
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(ProductChangedEvent event)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Placement old = placements.remove(event.getProductId());
+            if (old != null)
+            {
+                Counts counts = cells.get(old.cell());
+                counts.remove(old.cents());
+                if (counts.count == 0)
+                    cells.remove(old.cell());
+            }
+
+            if (event.getProduct() != null)
+                add(event.getProduct());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ProductFacets facets(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        long min = minPrice == null ? Long.MIN_VALUE : SqlValues.toCents(minPrice, RoundingMode.CEILING);
+        long max = maxPrice == null ? Long.MAX_VALUE : SqlValues.toCents(maxPrice, RoundingMode.FLOOR);
+        boolean priceFiltered = minPrice != null || maxPrice != null;
+
+        int total = 0;
+        Map<Integer, Integer> byCategory = new TreeMap<>();
+        Map<Integer, Integer> byColor = new HashMap<>();
+        int[] byBand = new int[bandEdgeCents.length + 1];
+
+        lock.readLock().lock();
+        try
+        {
+            int colorFilter = color == null ? NO_COLOR : colorCodes.getOrDefault(SqlValues.normalizeColor(color), UNKNOWN_COLOR);
+
+            for (Map.Entry<Cell, Counts> entry : cells.entrySet())
+            {
+                Cell cell = entry.getKey();
+                Counts counts = entry.getValue();
+
+                boolean categoryMatches = categoryId == null || cell.categoryId() == categoryId;
+                boolean colorMatches = color == null || cell.color() == colorFilter;
+                if (!categoryMatches && !colorMatches)
+                    continue;
+
+                int inRange = priceFiltered ? countInRange(cell.band(), counts, min, max) : counts.count;
+
+                if (colorMatches && inRange > 0)
+                    byCategory.merge(cell.categoryId(), inRange, Integer::sum);
+                if (categoryMatches && cell.color() != NO_COLOR && inRange > 0)
+                    byColor.merge(cell.color(), inRange, Integer::sum);
+                if (categoryMatches && colorMatches)
+                {
+                    total += inRange;
+                    byBand[cell.band()] += counts.count;
+                }
+            }
+
+            ProductFacets facets = new ProductFacets();
+            facets.setTotal(total);
+            facets.setCategories(new LinkedHashMap<>(byCategory));
+
+            Map<String, Integer> colors = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            byColor.forEach((code, count) -> colors.put(colorNames.get(code), count));
+            facets.setColors(new LinkedHashMap<>(colors));
+
+            for (int band = 0; band < byBand.length; band++)
+            {
+                BigDecimal low = band == 0 ? BigDecimal.ZERO : bandEdges[band - 1];
+                BigDecimal high = band == bandEdges.length ? null : bandEdges[band];
+                facets.getPrices().add(new ProductFacets.PriceBand(low, high, byBand[band]));
+            }
+            return facets;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    // whole bands are answered from the cell count; only the (at most two) bands cut by the range look at prices
+    private int countInRange(int band, Counts counts, long min, long max)
+    {
+        long bandLow = band == 0 ? Long.MIN_VALUE : bandEdgeCents[band - 1];
+        long bandHigh = band == bandEdgeCents.length ? Long.MAX_VALUE : bandEdgeCents[band] - 1;
+
+        if (bandLow >= min && bandHigh <= max)
+            return counts.count;
+        if (bandHigh < min || bandLow > max)
+            return 0;
+        return counts.between(min, max);
+    }
+
+    private void add(Product product)
+    {
+        long cents = product.getPrice() == null ? 0 : SqlValues.toCents(product.getPrice(), RoundingMode.HALF_UP);
+        Cell cell = new Cell(product.getCategoryId(), colorCode(product.getColor()), band(cents));
+
+        cells.computeIfAbsent(cell, key -> new Counts()).add(cents);
+        placements.put(product.getProductId(), new Placement(cell, cents));
+    }
+
+    private int band(long cents)
+    {
+        int position = Arrays.binarySearch(bandEdgeCents, cents);
+        // an exact edge opens the next band; otherwise binarySearch returns -(insertion point) - 1
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    private int colorCode(String color)
+    {
+        if (color == null || color.isBlank())
+            return NO_COLOR;
+
+        return colorCodes.computeIfAbsent(SqlValues.normalizeColor(color), key -> {
+            colorNames.add(color.stripTrailing());
+            return colorNames.size() - 1;
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package org.yearup.data.search;
+
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * An in-memory structure derived from the products table. {@link ProductIndexMaintainer} builds every index
+ * from a full scan at startup and then keeps it current from {@link ProductChangedEvent}s.
+ */
+public interface ProductIndex
+{
+    String getName();
+
+    boolean isReady();
+
+    void rebuild(List<Product> products);
+
+    void apply(ProductChangedEvent event);
+
+    /**
+     * Applies a chunk of writes, e.g. from a bulk import.
+     */
+    default void applyAll(List<ProductChangedEvent> events)
+    {
+        for (ProductChangedEvent event : events)
+        {
+            apply(event);
+        }
+    }
+}
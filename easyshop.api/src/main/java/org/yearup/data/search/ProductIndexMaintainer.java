@@ -0,0 +1,133 @@
+package org.yearup.data.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.data.ProductsCreatedEvent;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the in-memory product indexes current. They are first built by
+ * {@link org.yearup.data.cache.CatalogWarmup}; until then they report "not ready" and callers go to MySQL.
+ *
+ * A build starts from a product list read at one point in time. Writes published from {@link #beginRebuild()}
+ * on are held back for every index that is not built yet and replayed on top of it once it is, so nothing that
+ * lands between the read and the end of the build is lost. Replaying a write the list already contains is
+ * harmless, because each event carries the product's whole new state.
+ */
+@Component
+public class ProductIndexMaintainer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ProductIndexMaintainer.class);
+
+    private final List<ProductIndex> indexes;
+
+    // writes held back per index while it is being built; empty the rest of the time
+    private final Map<ProductIndex, List<ProductChangedEvent>> heldBack = new IdentityHashMap<>();
+    private volatile boolean holding;
+
+    public ProductIndexMaintainer(ObjectProvider<ProductIndex> indexes)
+    {
+        this.indexes = indexes.orderedStream().toList();
+    }
+
+    public List<ProductIndex> getIndexes()
+    {
+        return indexes;
+    }
+
+    /**
+     * Starts holding back writes for every index. Call before reading the products the indexes are built from.
+     */
+    public void beginRebuild()
+    {
+        synchronized (heldBack)
+        {
+            for (ProductIndex index : indexes)
+            {
+                heldBack.put(index, new ArrayList<>());
+            }
+            holding = true;
+        }
+    }
+
+    /**
+     * Builds the index from the products, then applies the writes held back since {@link #beginRebuild()}.
+     */
+    public void rebuild(ProductIndex index, List<Product> products)
+    {
+        long start = System.nanoTime();
+        index.rebuild(products);
+
+        int replayed;
+        synchronized (heldBack)
+        {
+            List<ProductChangedEvent> missed = heldBack.remove(index);
+            replayed = missed == null ? 0 : missed.size();
+            if (missed != null)
+                index.applyAll(missed);
+            holding = !heldBack.isEmpty();
+        }
+        LOG.info("Built {} index over {} products in {} ms, then replayed {} writes", index.getName(), products.size(),
+                (System.nanoTime() - start) / 1_000_000, replayed);
+    }
+
+    /**
+     * Stops holding back writes for indexes that were not rebuilt, e.g. because the products could not be read.
+     * Those indexes stay not ready.
+     */
+    public void endRebuild()
+    {
+        synchronized (heldBack)
+        {
+            heldBack.clear();
+            holding = false;
+        }
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        apply(List.of(event));
+    }
+
+    @EventListener
+    public void onProductsCreated(ProductsCreatedEvent event)
+    {
+        apply(event.asChanges());
+    }
+
+    private void apply(List<ProductChangedEvent> changes)
+    {
+        if (!holding)
+        {
+            // a write that sees no build in progress committed before the product list of any later build was read
+            for (ProductIndex index : indexes)
+            {
+                if (index.isReady())
+                    index.applyAll(changes);
+            }
+            return;
+        }
+
+        synchronized (heldBack)
+        {
+            for (ProductIndex index : indexes)
+            {
+                List<ProductChangedEvent> held = heldBack.get(index);
+                if (held != null)
+                    held.addAll(changes);
+                else if (index.isReady())
+                    index.applyAll(changes);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.yearup.data.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How often each product has been added to a cart since the application started. Used to rank typeahead
+ * suggestions. Scores only ever go up.
+ */
+@Component
+public class ProductPopularity
+{
+    private final Map<Integer, LongAdder> addToCartCounts = new ConcurrentHashMap<>();
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+
+    public void recordAddToCart(int productId)
+    {
+        addToCartCounts.computeIfAbsent(productId, id -> new LongAdder()).increment();
+        changed.add(productId);
+    }
+
+    public long score(int productId)
+    {
+        LongAdder count = addToCartCounts.get(productId);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * The products whose score went up since the last call. Meant for a single reader, the suggest index.
+     */
+    public Set<Integer> drainChanged()
+    {
+        Set<Integer> drained = new HashSet<>();
+        for (Integer productId : changed)
+        {
+            if (changed.remove(productId))
+                drained.add(productId);
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,326 @@
+package org.yearup.data.search;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Answers {@code ProductDao.search} filters from memory.
+ *
+ * Each product is a row in a set of primitive column arrays. Category and color filters are one bitset per
+ * value, AND-ed together; price ranges are cut from a price-sorted permutation of the rows with two binary
+ * searches. Rows are kept in product id order, which is the order MySQL returns, so results are read straight off
+ * the matching bitset. Updates rewrite a product's row in place, deletes retire it, and the arrays are compacted
+ * once half the rows are dead. A product created with a lower id than the last row (not something AUTO_INCREMENT
+ * does) compacts straight away to restore the order.
+ */
+@Component
+@ConditionalOnProperty(name = "products.search-index.enabled", havingValue = "true")
+public class ProductSearchIndex implements ProductIndex
+{
+    private static final int NO_COLOR = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    // columns, indexed by row
+    private int[] productIds = new int[0];
+    private long[] priceCents = new long[0];
+    private int[] categoryIds = new int[0];
+    private int[] colorCodes = new int[0];
+    private Product[] products = new Product[0];
+    private int rowCount;
+
+    private final BitSet live = new BitSet();
+    private final Map<Integer, Integer> rowByProductId = new HashMap<>();
+    private final Map<Integer, BitSet> rowsByCategory = new HashMap<>();
+    private final Map<String, Integer> colorDictionary = new HashMap<>();
+    private final List<BitSet> rowsByColor = new ArrayList<>();
+
+    // live rows ordered by price; rebuilt lazily after writes
+    private int[] priceOrder = new int[0];
+    private volatile boolean priceOrderStale;
+
+    @Override
+    public String getName()
+    {
+        return "product search";
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    @Override
+    public void rebuild(List<Product> source)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            load(source);
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(ProductChangedEvent event)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Integer row = rowByProductId.get(event.getProductId());
+            Product product = event.getProduct();
+            if (row != null)
+            {
+                retireRow(row);
+                if (product != null)
+                    fillRow(row, product);
+                else
+                    rowByProductId.remove(event.getProductId());
+            }
+            else if (product != null)
+            {
+                boolean inOrder = rowCount == 0 || product.getProductId() > productIds[rowCount - 1];
+                appendRow(product);
+                if (!inOrder)
+                    compact();
+            }
+
+            priceOrderStale = true;
+
+            if (rowCount > 64 && live.cardinality() < rowCount / 2)
+                compact();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        refreshPriceOrder();
+
+        lock.readLock().lock();
+        try
+        {
+            BitSet matches = (BitSet) live.clone();
+
+            if (categoryId != null)
+                matches.and(rowsByCategory.getOrDefault(categoryId, new BitSet()));
+
+            if (color != null)
+            {
+                Integer code = colorDictionary.get(SqlValues.normalizeColor(color));
+                matches.and(code == null ? new BitSet() : rowsByColor.get(code));
+            }
+
+            if (minPrice != null || maxPrice != null)
+                matches.and(priceRange(minPrice, maxPrice));
+
+            // rows are in primary key order, which is what MySQL returns
+            List<Product> result = new ArrayList<>(matches.cardinality());
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1))
+            {
+                result.add(products[row]);
+            }
+            return result;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return rowByProductId.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet priceRange(BigDecimal minPrice, BigDecimal maxPrice)
+    {
+        long min = minPrice == null ? Long.MIN_VALUE : SqlValues.toCents(minPrice, RoundingMode.CEILING);
+        long max = maxPrice == null ? Long.MAX_VALUE : SqlValues.toCents(maxPrice, RoundingMode.FLOOR);
+        BitSet rows = new BitSet(rowCount);
+
+        if (priceOrderStale)
+        {
+            // a write slipped in after refreshPriceOrder(); scan the column instead of using an outdated order
+            live.stream()
+                .filter(row -> priceCents[row] >= min && priceCents[row] <= max)
+                .forEach(rows::set);
+            return rows;
+        }
+
+        int from = min == Long.MIN_VALUE ? 0 : lowerBound(min);
+        int to = max == Long.MAX_VALUE ? priceOrder.length : lowerBound(max + 1);
+        for (int i = from; i < to; i++)
+        {
+            rows.set(priceOrder[i]);
+        }
+        return rows;
+    }
+
+    // first position in priceOrder whose price is >= cents
+    private int lowerBound(long cents)
+    {
+        int low = 0;
+        int high = priceOrder.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (priceCents[priceOrder[mid]] < cents)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private void refreshPriceOrder()
+    {
+        if (!priceOrderStale)
+            return;
+
+        lock.writeLock().lock();
+        try
+        {
+            if (priceOrderStale)
+                sortByPrice();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void sortByPrice()
+    {
+        priceOrder = live.stream()
+                         .boxed()
+                         .sorted((a, b) -> Long.compare(priceCents[a], priceCents[b]))
+                         .mapToInt(Integer::intValue)
+                         .toArray();
+        priceOrderStale = false;
+    }
+
+    private void appendRow(Product product)
+    {
+        if (rowCount == productIds.length)
+            grow();
+
+        int row = rowCount++;
+        fillRow(row, product);
+    }
+
+    private void fillRow(int row, Product product)
+    {
+        productIds[row] = product.getProductId();
+        priceCents[row] = product.getPrice() == null ? 0 : SqlValues.toCents(product.getPrice(), RoundingMode.HALF_UP);
+        categoryIds[row] = product.getCategoryId();
+        colorCodes[row] = colorCode(product.getColor());
+        products[row] = product;
+
+        live.set(row);
+        rowByProductId.put(product.getProductId(), row);
+        rowsByCategory.computeIfAbsent(product.getCategoryId(), k -> new BitSet()).set(row);
+        if (colorCodes[row] != NO_COLOR)
+            rowsByColor.get(colorCodes[row]).set(row);
+    }
+
+    private void retireRow(int row)
+    {
+        live.clear(row);
+        BitSet category = rowsByCategory.get(categoryIds[row]);
+        if (category != null)
+            category.clear(row);
+        if (colorCodes[row] != NO_COLOR)
+            rowsByColor.get(colorCodes[row]).clear(row);
+        products[row] = null;
+    }
+
+    private void compact()
+    {
+        List<Product> remaining = new ArrayList<>(live.cardinality());
+        live.stream().forEach(row -> remaining.add(products[row]));
+        load(remaining);
+    }
+
+    private void load(List<Product> source)
+    {
+        List<Product> byId = new ArrayList<>(source);
+        byId.sort(Comparator.comparingInt(Product::getProductId));
+
+        clear(byId.size());
+        for (Product product : byId)
+        {
+            appendRow(product);
+        }
+        sortByPrice();
+    }
+
+    private void clear(int capacity)
+    {
+        int size = Math.max(16, capacity);
+        productIds = new int[size];
+        priceCents = new long[size];
+        categoryIds = new int[size];
+        colorCodes = new int[size];
+        products = new Product[size];
+        rowCount = 0;
+
+        live.clear();
+        rowByProductId.clear();
+        rowsByCategory.clear();
+        colorDictionary.clear();
+        rowsByColor.clear();
+    }
+
+    private void grow()
+    {
+        int size = Math.max(16, productIds.length * 2);
+        productIds = Arrays.copyOf(productIds, size);
+        priceCents = Arrays.copyOf(priceCents, size);
+        categoryIds = Arrays.copyOf(categoryIds, size);
+        colorCodes = Arrays.copyOf(colorCodes, size);
+        products = Arrays.copyOf(products, size);
+    }
+
+    private int colorCode(String color)
+    {
+        if (color == null)
+            return NO_COLOR;
+
+        return colorDictionary.computeIfAbsent(SqlValues.normalizeColor(color), key -> {
+            rowsByColor.add(new BitSet());
+            return rowsByColor.size() - 1;
+        });
+    }
+}
@@ -0,0 +1,278 @@
+package org.yearup.data.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Similar products" for {@code GET /products/{id}/similar}.
+ *
+ * Each product is reduced to a set of shingles (name and description words, adjacent word pairs and its
+ * color) and then to a {@value #HASHES}-value MinHash signature; the share of equal positions in two signatures
+ * estimates the Jaccard similarity of their shingle sets. Signatures are cut into {@value #BANDS} bands of
+ * {@value #ROWS} rows and every band is hashed into a bucket, so candidates are the products sharing at least
+ * one bucket; with these numbers pairs above roughly 50% similarity are very likely to meet.
+ *
+ * Only signatures are kept (no products), and a bucket stops accepting members at
+ * {@code products.similar.max-bucket-size}, so memory grows linearly with the catalog and lookups stay cheap.
+ */
+@Component
+public class ProductSimilarityIndex implements ProductIndex
+{
+    private static final int HASHES = 64;
+    private static final int BANDS = 16;
+    private static final int ROWS = HASHES / BANDS;
+    private static final long[] SEEDS = new SplittableRandom(0x5EEDL).longs(HASHES).toArray();
+
+    private final int maxBucketSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final Map<Long, Bucket> buckets = new HashMap<>();
+
+    public record Match(int productId, double similarity) { }
+
+    @Autowired
+    public ProductSimilarityIndex(@Value("${products.similar.max-bucket-size:64}") int maxBucketSize)
+    {
+        this.maxBucketSize = maxBucketSize;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "product similarity";
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    @Override
+    public void rebuild(List<Product> products)
+    {
+        // signatures are the expensive part and need no lock
+        Map<Integer, int[]> computed = new HashMap<>();
+        for (Product product : products)
+        {
+            int[] signature = signature(product);
+            if (signature != null)
+                computed.put(product.getProductId(), signature);
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            signatures.clear();
+            buckets.clear();
+            computed.forEach(this::add);
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(ProductChangedEvent event)
+    {
+        int[] signature = event.getProduct() == null ? null : signature(event.getProduct());
+
+        lock.writeLock().lock();
+        try
+        {
+            int[] old = signatures.remove(event.getProductId());
+            if (old != null)
+                removeFromBuckets(event.getProductId(), old);
+
+            if (signature != null)
+                add(event.getProductId(), signature);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} products most similar to the given one, best first. Returns {@code null} when the
+     * product is not indexed.
+     */
+    public List<Match> similarTo(int productId, int limit)
+    {
+        lock.readLock().lock();
+        try
+        {
+            int[] signature = signatures.get(productId);
+            if (signature == null)
+                return null;
+
+            Set<Integer> candidates = new HashSet<>();
+            for (int band = 0; band < BANDS; band++)
+            {
+                Bucket bucket = buckets.get(bandKey(signature, band));
+                if (bucket != null)
+                {
+                    for (int i = 0; i < bucket.size; i++)
+                    {
+                        candidates.add(bucket.productIds[i]);
+                    }
+                }
+            }
+            candidates.remove(productId);
+
+            List<Match> matches = new ArrayList<>(candidates.size());
+            for (int candidate : candidates)
+            {
+                matches.add(new Match(candidate, estimate(signature, signatures.get(candidate))));
+            }
+            matches.sort((a, b) -> a.similarity() != b.similarity()
+                    ? Double.compare(b.similarity(), a.similarity())
+                    : Integer.compare(a.productId(), b.productId()));
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(int productId, int[] signature)
+    {
+        signatures.put(productId, signature);
+        for (int band = 0; band < BANDS; band++)
+        {
+            buckets.computeIfAbsent(bandKey(signature, band), key -> new Bucket()).add(productId, maxBucketSize);
+        }
+    }
+
+    private void removeFromBuckets(int productId, int[] signature)
+    {
+        for (int band = 0; band < BANDS; band++)
+        {
+            long key = bandKey(signature, band);
+            Bucket bucket = buckets.get(key);
+            if (bucket != null && bucket.remove(productId) && bucket.size == 0)
+                buckets.remove(key);
+        }
+    }
+
+    private static double estimate(int[] a, int[] b)
+    {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++)
+        {
+            if (a[i] == b[i])
+                equal++;
+        }
+        return (double) equal / HASHES;
+    }
+
+    private static long bandKey(int[] signature, int band)
+    {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++)
+        {
+            key = mix(key * 31 + signature[row]);
+        }
+        return key;
+    }
+
+    // null when the product has no text to compare
+    static int[] signature(Product product)
+    {
+        Set<String> shingles = shingles(product);
+        if (shingles.isEmpty())
+            return null;
+
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String shingle : shingles)
+        {
+            long base = mix(shingle.hashCode());
+            for (int i = 0; i < HASHES; i++)
+            {
+                int value = (int) (mix(base ^ SEEDS[i]) >>> 33);
+                if (value < signature[i])
+                    signature[i] = value;
+            }
+        }
+        return signature;
+    }
+
+    private static Set<String> shingles(Product product)
+    {
+        Set<String> shingles = new HashSet<>();
+        addWordShingles(shingles, TextAnalyzer.terms(product.getName()));
+        addWordShingles(shingles, TextAnalyzer.terms(product.getDescription()));
+        if (product.getColor() != null && !product.getColor().isBlank())
+            shingles.add("color:" + product.getColor().trim().toLowerCase(Locale.ROOT));
+        return shingles;
+    }
+
+    private static void addWordShingles(Set<String> shingles, List<String> words)
+    {
+        for (int i = 0; i < words.size(); i++)
+        {
+            shingles.add(words.get(i));
+            if (i + 1 < words.size())
+                shingles.add(words.get(i) + " " + words.get(i + 1));
+        }
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Bucket
+    {
+        int[] productIds = new int[2];
+        int size;
+
+        void add(int productId, int maxSize)
+        {
+            // a crowded bucket already offers plenty of candidates; more members would only slow lookups down
+            if (size >= maxSize)
+                return;
+            if (size == productIds.length)
+                productIds = Arrays.copyOf(productIds, Math.min(maxSize, size * 2));
+            productIds[size++] = productId;
+        }
+
+        boolean remove(int productId)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (productIds[i] == productId)
+                {
+                    productIds[i] = productIds[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
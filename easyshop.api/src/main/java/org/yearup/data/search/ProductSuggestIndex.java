@@ -0,0 +1,391 @@
+package org.yearup.data.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+import org.yearup.models.ProductSuggestion;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typeahead for {@code GET /products/suggest}.
+ *
+ * Product names are kept in a prefix trie flattened into arrays, and every node stores the best k products
+ * below it, so a lookup is one walk down the prefix and no ranking happens per keystroke. Every word of a name
+ * starts a key, so "sho" finds "Running Shoes". Products are ranked by {@link ProductPopularity}, then by name.
+ *
+ * The trie is immutable and swapped in whole, every {@code products.suggest.refresh-interval-ms} at most. Product
+ * writes change its shape, so they mark it dirty for a full rebuild. Add-to-cart counts only re-rank: because
+ * scores only go up, a product can only climb, so just the nodes on its own keys need their best k checked, and
+ * a new trie sharing everything but those lists is swapped in only if one of them changed.
+ */
+@Component
+public class ProductSuggestIndex implements ProductIndex
+{
+    private final ProductPopularity popularity;
+    private final int topK;
+
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+    private volatile Trie trie;
+
+    @Autowired
+    public ProductSuggestIndex(ProductPopularity popularity,
+                               @Value("${products.suggest.top-k:10}") int topK)
+    {
+        this.popularity = popularity;
+        this.topK = topK;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "product suggest";
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return trie != null;
+    }
+
+    @Override
+    public void rebuild(List<Product> products)
+    {
+        names.clear();
+        for (Product product : products)
+        {
+            if (product.getName() != null)
+                names.put(product.getProductId(), product.getName());
+        }
+        build();
+    }
+
+    @Override
+    public void apply(ProductChangedEvent event)
+    {
+        if (event.getProduct() == null || event.getProduct().getName() == null)
+            names.remove(event.getProductId());
+        else
+            names.put(event.getProductId(), event.getProduct().getName());
+        dirty = true;
+    }
+
+    /**
+     * At most {@code limit} (and at most {@code products.suggest.top-k}) products whose name has a word starting
+     * with the prefix, most popular first.
+     */
+    public List<ProductSuggestion> suggest(String prefix, int limit)
+    {
+        Trie current = trie;
+        String key = normalize(prefix);
+        if (current == null || key.isEmpty())
+            return new ArrayList<>();
+        return current.lookup(key, limit);
+    }
+
+    public int getTopK()
+    {
+        return topK;
+    }
+
+    @Scheduled(fixedDelayString = "${products.suggest.refresh-interval-ms:5000}")
+    public void refresh()
+    {
+        if (trie == null)
+            return;
+
+        if (dirty)
+            build();
+        else
+            rerank(popularity.drainChanged());
+    }
+
+    private synchronized void build()
+    {
+        // clear the flags first: a change that lands while we build marks it dirty again for the next run
+        dirty = false;
+        popularity.drainChanged();
+
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>(names.entrySet());
+        long[] scores = new long[entries.size()];
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+            scores[i] = popularity.score(entries.get(i).getKey());
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -scores[i])
+                                     .thenComparing(i -> entries.get(i).getValue(), String.CASE_INSENSITIVE_ORDER)
+                                     .thenComparing(i -> entries.get(i).getKey()));
+
+        // a product's rank is its position in that order, so "best k" is simply "k smallest ranks"
+        int[] productIds = new int[order.length];
+        String[] rankedNames = new String[order.length];
+        for (int rank = 0; rank < order.length; rank++)
+        {
+            productIds[rank] = entries.get(order[rank]).getKey();
+            rankedNames[rank] = entries.get(order[rank]).getValue();
+        }
+
+        trie = Trie.build(productIds, rankedNames, topK);
+    }
+
+    private synchronized void rerank(Set<Integer> climbed)
+    {
+        Trie current = trie;
+        if (climbed.isEmpty() || current == null)
+            return;
+
+        // one score per product for the whole pass, so the order can't shift while lists are being sorted
+        Map<Integer, Long> scores = new HashMap<>();
+        Comparator<Integer> order = Comparator.<Integer>comparingLong(
+                        slot -> -scores.computeIfAbsent(slot, s -> popularity.score(current.productIds[s])))
+                .thenComparing(slot -> current.names[slot], String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(slot -> current.productIds[slot]);
+
+        // the products that climbed below each node
+        Map<Integer, Set<Integer>> climbedByNode = new HashMap<>();
+        for (int productId : climbed)
+        {
+            Integer slot = current.slotByProductId.get(productId);
+            if (slot == null)
+                continue;
+            for (int node : current.nodesOf(current.names[slot]))
+            {
+                climbedByNode.computeIfAbsent(node, n -> new HashSet<>()).add(slot);
+            }
+        }
+
+        int[][] best = current.best.clone();
+        boolean changed = false;
+        for (Map.Entry<Integer, Set<Integer>> entry : climbedByNode.entrySet())
+        {
+            int node = entry.getKey();
+            // nobody else moved, so the new best k come from the old ones and the climbers
+            Set<Integer> candidates = new HashSet<>(entry.getValue());
+            for (int slot : best[node])
+            {
+                candidates.add(slot);
+            }
+            int[] updated = candidates.stream().sorted(order).limit(topK).mapToInt(Integer::intValue).toArray();
+            if (!Arrays.equals(updated, best[node]))
+            {
+                best[node] = updated;
+                changed = true;
+            }
+        }
+
+        if (changed)
+            trie = current.withBest(best);
+    }
+
+    // lower-cased words separated by single spaces, the same for names and typed prefixes
+    private static String normalize(String text)
+    {
+        return String.join(" ", TextAnalyzer.terms(text));
+    }
+
+    static final class Trie
+    {
+        private final char[] labels;
+        private final int[] firstChild;
+        private final int[] childCount;
+        // per node, the best k products below it as slots into productIds and names
+        private final int[][] best;
+        private final int[] productIds;
+        private final String[] names;
+        private final Map<Integer, Integer> slotByProductId;
+
+        private Trie(char[] labels, int[] firstChild, int[] childCount, int[][] best, int[] productIds, String[] names,
+                     Map<Integer, Integer> slotByProductId)
+        {
+            this.labels = labels;
+            this.firstChild = firstChild;
+            this.childCount = childCount;
+            this.best = best;
+            this.productIds = productIds;
+            this.names = names;
+            this.slotByProductId = slotByProductId;
+        }
+
+        // the same trie with re-ranked best lists; everything else is shared
+        Trie withBest(int[][] best)
+        {
+            return new Trie(labels, firstChild, childCount, best, productIds, names, slotByProductId);
+        }
+
+        // every node on the keys of a name, i.e. every node whose best list the product can appear in
+        Set<Integer> nodesOf(String name)
+        {
+            Set<Integer> nodes = new HashSet<>();
+            String key = normalize(name);
+            int start = 0;
+            while (!key.isEmpty())
+            {
+                int node = 0;
+                for (int i = start; i < key.length() && node >= 0; i++)
+                {
+                    node = child(node, key.charAt(i));
+                    if (node >= 0)
+                        nodes.add(node);
+                }
+                int space = key.indexOf(' ', start);
+                if (space < 0)
+                    break;
+                start = space + 1;
+            }
+            return nodes;
+        }
+
+        List<ProductSuggestion> lookup(String prefix, int limit)
+        {
+            int node = 0;
+            for (int i = 0; i < prefix.length() && node >= 0; i++)
+            {
+                node = child(node, prefix.charAt(i));
+            }
+
+            List<ProductSuggestion> suggestions = new ArrayList<>();
+            if (node < 0)
+                return suggestions;
+
+            int[] slots = best[node];
+            for (int i = 0; i < slots.length && i < limit; i++)
+            {
+                suggestions.add(new ProductSuggestion(productIds[slots[i]], names[slots[i]]));
+            }
+            return suggestions;
+        }
+
+        // children of a node are contiguous and sorted by label
+        private int child(int node, char label)
+        {
+            int low = firstChild[node];
+            int high = low + childCount[node] - 1;
+            while (low <= high)
+            {
+                int mid = (low + high) >>> 1;
+                if (labels[mid] < label)
+                    low = mid + 1;
+                else if (labels[mid] > label)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -1;
+        }
+
+        static Trie build(int[] productIds, String[] names, int k)
+        {
+            Node root = new Node('\0');
+            for (int rank = 0; rank < names.length; rank++)
+            {
+                String key = normalize(names[rank]);
+                if (key.isEmpty())
+                    continue;
+
+                // one key per word, running to the end of the name
+                int start = 0;
+                while (true)
+                {
+                    root.insert(key, start, rank);
+                    int space = key.indexOf(' ', start);
+                    if (space < 0)
+                        break;
+                    start = space + 1;
+                }
+            }
+            root.collectBest(k);
+
+            // breadth-first numbering puts the children of every node next to each other
+            List<Node> nodes = new ArrayList<>();
+            Queue<Node> queue = new ArrayDeque<>();
+            queue.add(root);
+            while (!queue.isEmpty())
+            {
+                Node node = queue.poll();
+                nodes.add(node);
+                queue.addAll(node.children.values());
+            }
+
+            char[] labels = new char[nodes.size()];
+            int[] firstChild = new int[nodes.size()];
+            int[] childCount = new int[nodes.size()];
+            int[][] best = new int[nodes.size()][];
+            int next = 1;
+            for (int i = 0; i < nodes.size(); i++)
+            {
+                Node node = nodes.get(i);
+                labels[i] = node.label;
+                firstChild[i] = next;
+                childCount[i] = node.children.size();
+                best[i] = node.best;
+                next += node.children.size();
+            }
+            Map<Integer, Integer> slotByProductId = new HashMap<>();
+            for (int slot = 0; slot < productIds.length; slot++)
+            {
+                slotByProductId.put(productIds[slot], slot);
+            }
+            return new Trie(labels, firstChild, childCount, best, productIds, names, slotByProductId);
+        }
+    }
+
+    // mutable node used only while building
+    private static final class Node
+    {
+        final char label;
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        int[] terminal = new int[0];
+        int[] best;
+
+        Node(char label)
+        {
+            this.label = label;
+        }
+
+        void insert(String key, int from, int rank)
+        {
+            Node node = this;
+            for (int i = from; i < key.length(); i++)
+            {
+                char c = key.charAt(i);
+                node = node.children.computeIfAbsent(c, Node::new);
+            }
+            node.terminal = Arrays.copyOf(node.terminal, node.terminal.length + 1);
+            node.terminal[node.terminal.length - 1] = rank;
+        }
+
+        int[] collectBest(int k)
+        {
+            int[] candidates = terminal;
+            for (Node child : children.values())
+            {
+                int[] childBest = child.collectBest(k);
+                int length = candidates.length;
+                candidates = Arrays.copyOf(candidates, length + childBest.length);
+                System.arraycopy(childBest, 0, candidates, length, childBest.length);
+            }
+
+            // the same product can arrive through several keys; keep each rank once
+            best = Arrays.stream(candidates).sorted().distinct().limit(k).toArray();
+            terminal = null;
+            return best;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.yearup.data.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.data.ProductQuery;
+import org.yearup.models.Product;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over product names and descriptions for {@code q=} searches, ranked with BM25.
+ *
+ * Every indexed product gets a document number that only ever grows, so a posting list is appended to in
+ * order and can be stored as variable-length (document gap, term frequency) pairs. A write retires the old
+ * document and appends a new one; retired documents are skipped while scoring and dropped when the index is
+ * compacted. Name terms count {@value #NAME_BOOST} times, which is a cheap way of ranking title matches first.
+ */
+@Component
+@ConditionalOnProperty(name = "products.text-index.enabled", havingValue = "true")
+public class ProductTextIndex implements ProductIndex
+{
+    private static final int NAME_BOOST = 3;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final int maxResults;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<Integer, Integer> docByProductId = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private long liveLength;
+
+    // per document, indexed by document number
+    private Product[] products = new Product[0];
+    private int[] lengths = new int[0];
+    private long[] priceCents = new long[0];
+    private int docCount;
+
+    @Autowired
+    public ProductTextIndex(@Value("${products.text-index.max-results:100}") int maxResults)
+    {
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "product text";
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    @Override
+    public void rebuild(List<Product> source)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            clear(source.size());
+            for (Product product : source)
+            {
+                addDocument(product);
+            }
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(ProductChangedEvent event)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Integer oldDoc = docByProductId.remove(event.getProductId());
+            if (oldDoc != null)
+                retireDocument(oldDoc);
+
+            if (event.getProduct() != null)
+                addDocument(event.getProduct());
+
+            if (docCount > 64 && live.cardinality() < docCount / 2)
+                compact();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Products matching any term of {@code query.getText()} and all of the query's filters.
+     * A {@link ProductQuery#isRanked() ranked} query returns the best {@code limit} matches (at most
+     * {@code products.text-index.max-results}) by descending score; otherwise every match is returned in
+     * product id order for the caller to sort and page.
+     */
+    public List<Product> search(ProductQuery query)
+    {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.terms(query.getText()));
+
+        lock.readLock().lock();
+        try
+        {
+            int liveDocs = live.cardinality();
+            if (terms.isEmpty() || liveDocs == 0)
+                return new ArrayList<>();
+
+            float averageLength = (float) liveLength / liveDocs;
+            float[] scores = new float[docCount];
+            int[] matched = new int[16];
+            int matchCount = 0;
+            Filter filter = new Filter(query);
+
+            for (String term : terms)
+            {
+                PostingList list = postings.get(term);
+                if (list == null || list.liveDocs == 0)
+                    continue;
+
+                float idf = (float) Math.log(1 + (liveDocs - list.liveDocs + 0.5) / (list.liveDocs + 0.5));
+                PostingList.Reader reader = list.reader();
+                while (reader.next())
+                {
+                    int doc = reader.doc;
+                    if (!live.get(doc) || !filter.matches(doc))
+                        continue;
+
+                    float tf = reader.frequency;
+                    float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                    if (scores[doc] == 0)
+                    {
+                        if (matchCount == matched.length)
+                            matched = Arrays.copyOf(matched, matchCount * 2);
+                        matched[matchCount++] = doc;
+                    }
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+
+            if (!query.isRanked())
+            {
+                List<Product> result = new ArrayList<>(matchCount);
+                Arrays.stream(matched, 0, matchCount)
+                      .boxed()
+                      .sorted((a, b) -> Integer.compare(products[a].getProductId(), products[b].getProductId()))
+                      .forEach(doc -> result.add(products[doc]));
+                return result;
+            }
+
+            return topK(scores, matched, matchCount, query.getLimit() == null ? maxResults : Math.min(query.getLimit(), maxResults));
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    // bounded min-heap: the weakest of the best k so far sits on top and is the one pushed out
+    private List<Product> topK(float[] scores, int[] matched, int matchCount, int k)
+    {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, (a, b) -> compareHits(scores, b, a));
+        for (int i = 0; i < matchCount; i++)
+        {
+            int doc = matched[i];
+            if (heap.size() < k)
+            {
+                heap.add(doc);
+            }
+            else if (compareHits(scores, doc, heap.peek()) < 0)
+            {
+                heap.poll();
+                heap.add(doc);
+            }
+        }
+
+        List<Product> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty())
+        {
+            result.add(products[heap.poll()]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // best first: higher score, then lower product id so equal scores come back in a stable order
+    private int compareHits(float[] scores, int a, int b)
+    {
+        int byScore = Float.compare(scores[b], scores[a]);
+        return byScore != 0 ? byScore : Integer.compare(products[a].getProductId(), products[b].getProductId());
+    }
+
+    private void addDocument(Product product)
+    {
+        if (docCount == products.length)
+            grow();
+
+        int doc = docCount++;
+        Map<String, Integer> frequencies = termFrequencies(product);
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet())
+        {
+            postings.computeIfAbsent(entry.getKey(), term -> new PostingList()).append(doc, entry.getValue());
+            length += entry.getValue();
+        }
+
+        products[doc] = product;
+        lengths[doc] = length;
+        priceCents[doc] = product.getPrice() == null ? 0 : SqlValues.toCents(product.getPrice(), RoundingMode.HALF_UP);
+        live.set(doc);
+        liveLength += length;
+        docByProductId.put(product.getProductId(), doc);
+    }
+
+    private void retireDocument(int doc)
+    {
+        for (String term : termFrequencies(products[doc]).keySet())
+        {
+            PostingList list = postings.get(term);
+            if (list != null)
+                list.liveDocs--;
+        }
+        live.clear(doc);
+        liveLength -= lengths[doc];
+        products[doc] = null;
+    }
+
+    private void compact()
+    {
+        List<Product> remaining = new ArrayList<>(live.cardinality());
+        live.stream().forEach(doc -> remaining.add(products[doc]));
+
+        clear(remaining.size());
+        for (Product product : remaining)
+        {
+            addDocument(product);
+        }
+    }
+
+    private void clear(int capacity)
+    {
+        int size = Math.max(16, capacity);
+        products = new Product[size];
+        lengths = new int[size];
+        priceCents = new long[size];
+        docCount = 0;
+
+        postings.clear();
+        docByProductId.clear();
+        live.clear();
+        liveLength = 0;
+    }
+
+    private void grow()
+    {
+        int size = Math.max(16, products.length * 2);
+        products = Arrays.copyOf(products, size);
+        lengths = Arrays.copyOf(lengths, size);
+        priceCents = Arrays.copyOf(priceCents, size);
+    }
+
+    private static Map<String, Integer> termFrequencies(Product product)
+    {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : TextAnalyzer.terms(product.getName()))
+        {
+            frequencies.merge(term, NAME_BOOST, Integer::sum);
+        }
+        for (String term : TextAnalyzer.terms(product.getDescription()))
+        {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    // the category / price / color filters of ProductDao.search, checked per candidate document
+    private final class Filter
+    {
+        private final Integer categoryId;
+        private final long minCents;
+        private final long maxCents;
+        private final String color;
+
+        Filter(ProductQuery query)
+        {
+            categoryId = query.getCategoryId();
+            minCents = query.getMinPrice() == null ? Long.MIN_VALUE : SqlValues.toCents(query.getMinPrice(), RoundingMode.CEILING);
+            maxCents = query.getMaxPrice() == null ? Long.MAX_VALUE : SqlValues.toCents(query.getMaxPrice(), RoundingMode.FLOOR);
+            color = query.getColor() == null ? null : SqlValues.normalizeColor(query.getColor());
+        }
+
+        boolean matches(int doc)
+        {
+            Product product = products[doc];
+            if (categoryId != null && product.getCategoryId() != categoryId)
+                return false;
+            if (priceCents[doc] < minCents || priceCents[doc] > maxCents)
+                return false;
+            return color == null || (product.getColor() != null && SqlValues.normalizeColor(product.getColor()).equals(color));
+        }
+    }
+
+    /**
+     * Postings of one term as varint-encoded (document gap, frequency) pairs. {@code liveDocs} is the term's
+     * document frequency without retired documents, which is what BM25's idf needs.
+     */
+    static final class PostingList
+    {
+        private byte[] data = new byte[8];
+        private int size;
+        private int lastDoc = -1;
+        int liveDocs;
+
+        void append(int doc, int frequency)
+        {
+            writeVarint(doc - lastDoc);
+            writeVarint(frequency);
+            lastDoc = doc;
+            liveDocs++;
+        }
+
+        Reader reader()
+        {
+            return new Reader();
+        }
+
+        private void writeVarint(int value)
+        {
+            if (size + 5 > data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+
+            while ((value & ~0x7F) != 0)
+            {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        final class Reader
+        {
+            private int position;
+            int doc = -1;
+            int frequency;
+
+            boolean next()
+            {
+                if (position >= size)
+                    return false;
+                doc += readVarint();
+                frequency = readVarint();
+                return true;
+            }
+
+            private int readVarint()
+            {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do
+                {
+                    b = data[position++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                }
+                while ((b & 0x80) != 0);
+                return value;
+            }
+        }
+    }
+}
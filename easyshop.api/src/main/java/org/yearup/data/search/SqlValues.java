@@ -0,0 +1,36 @@
+package org.yearup.data.search;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * Compares product values the way MySQL does, so the in-memory indexes and the SQL queries they stand in for
+ * agree on which products match.
+ */
+public final class SqlValues
+{
+    private static final BigDecimal MIN_CENTS = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_CENTS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private SqlValues()
+    {
+    }
+
+    // MySQL compares colors case-insensitively and ignores trailing spaces, but not leading ones
+    public static String normalizeColor(String color)
+    {
+        return color.stripTrailing().toLowerCase(Locale.ROOT);
+    }
+
+    // prices beyond what a long can hold in cents can't match anything more than the extremes do
+    public static long toCents(BigDecimal price, RoundingMode roundingMode)
+    {
+        BigDecimal cents = price.movePointRight(2).setScale(0, roundingMode);
+        if (cents.compareTo(MAX_CENTS) > 0)
+            return Long.MAX_VALUE;
+        if (cents.compareTo(MIN_CENTS) < 0)
+            return Long.MIN_VALUE;
+        return cents.longValue();
+    }
+}
@@ -0,0 +1,40 @@
+package org.yearup.data.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits product text into search terms: lower-cased runs of letters and digits.
+ * The text index and the MySQL fallback both use it so they agree on what a term is.
+ */
+public final class TextAnalyzer
+{
+    private TextAnalyzer()
+    {
+    }
+
+    public static List<String> terms(String text)
+    {
+        List<String> terms = new ArrayList<>();
+        if (text == null)
+            return terms;
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++)
+        {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0)
+            {
+                start = i;
+            }
+            else if (!wordChar && start >= 0)
+            {
+                terms.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
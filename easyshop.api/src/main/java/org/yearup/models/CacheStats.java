@@ -0,0 +1,106 @@
+package org.yearup.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+public class CacheStats
+{
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int size;
+    private int maximumSize;
+    // only reported by caches that can estimate the heap their entries use
+    private Long estimatedBytes;
+    private Long bytesPerEntry;
+
+    public CacheStats()
+    {
+    }
+
+    public CacheStats(long hits, long misses, long evictions, int size, int maximumSize)
+    {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maximumSize = maximumSize;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public void setHits(long hits)
+    {
+        this.hits = hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public void setMisses(long misses)
+    {
+        this.misses = misses;
+    }
+
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions)
+    {
+        this.evictions = evictions;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public void setSize(int size)
+    {
+        this.size = size;
+    }
+
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize)
+    {
+        this.maximumSize = maximumSize;
+    }
+
+    public double getHitRate()
+    {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getEstimatedBytes()
+    {
+        return estimatedBytes;
+    }
+
+    public void setEstimatedBytes(Long estimatedBytes)
+    {
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getBytesPerEntry()
+    {
+        return bytesPerEntry;
+    }
+
+    public void setBytesPerEntry(Long bytesPerEntry)
+    {
+        this.bytesPerEntry = bytesPerEntry;
+    }
+}
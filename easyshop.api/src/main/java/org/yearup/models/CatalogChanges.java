@@ -0,0 +1,88 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The catalog writes after a client's last sync: current products and categories that were created or
+ * updated, and the ids of deleted ones. {@code sequence} is what the client passes as {@code since} next time.
+ */
+public class CatalogChanges
+{
+    private long sequence;
+    private boolean reset;
+    private List<Product> products = new ArrayList<>();
+    private List<Integer> deletedProductIds = new ArrayList<>();
+    private List<Category> categories = new ArrayList<>();
+    private List<Integer> deletedCategoryIds = new ArrayList<>();
+
+    public CatalogChanges()
+    {
+    }
+
+    public CatalogChanges(long sequence)
+    {
+        this.sequence = sequence;
+    }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public void setSequence(long sequence)
+    {
+        this.sequence = sequence;
+    }
+
+    // the requested sequence is no longer covered; reload the full catalog
+    public boolean isReset()
+    {
+        return reset;
+    }
+
+    public void setReset(boolean reset)
+    {
+        this.reset = reset;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+
+    public List<Integer> getDeletedProductIds()
+    {
+        return deletedProductIds;
+    }
+
+    public void setDeletedProductIds(List<Integer> deletedProductIds)
+    {
+        this.deletedProductIds = deletedProductIds;
+    }
+
+    public List<Category> getCategories()
+    {
+        return categories;
+    }
+
+    public void setCategories(List<Category> categories)
+    {
+        this.categories = categories;
+    }
+
+    public List<Integer> getDeletedCategoryIds()
+    {
+        return deletedCategoryIds;
+    }
+
+    public void setDeletedCategoryIds(List<Integer> deletedCategoryIds)
+    {
+        this.deletedCategoryIds = deletedCategoryIds;
+    }
+}
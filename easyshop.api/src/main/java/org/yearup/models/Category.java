@@ -1,10 +1,17 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
 public class Category
 {
     private int categoryId;
     private String name;
     private String description;
+    // only filled in by the reads that ask for them
+    private CategorySummary summary;
+    private List<Product> products;
 
     public Category()
     {
@@ -46,4 +53,26 @@ public class Category
     {
         this.description = description;
     }
-}
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public CategorySummary getSummary()
+    {
+        return summary;
+    }
+
+    public void setSummary(CategorySummary summary)
+    {
+        this.summary = summary;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+}
\ No newline at end of file
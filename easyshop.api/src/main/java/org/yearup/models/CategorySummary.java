@@ -0,0 +1,66 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Product figures for one category. Prices are {@code null} when the category has no priced products.
+ */
+public class CategorySummary
+{
+    private int productCount;
+    private int inStockCount;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    public CategorySummary()
+    {
+    }
+
+    public CategorySummary(int productCount, int inStockCount, BigDecimal minPrice, BigDecimal maxPrice)
+    {
+        this.productCount = productCount;
+        this.inStockCount = inStockCount;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public int getProductCount()
+    {
+        return productCount;
+    }
+
+    public void setProductCount(int productCount)
+    {
+        this.productCount = productCount;
+    }
+
+    public int getInStockCount()
+    {
+        return inStockCount;
+    }
+
+    public void setInStockCount(int inStockCount)
+    {
+        this.inStockCount = inStockCount;
+    }
+
+    public BigDecimal getMinPrice()
+    {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice)
+    {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice)
+    {
+        this.maxPrice = maxPrice;
+    }
+}
@@ -1,9 +1,18 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+
 import java.math.BigDecimal;
 
+// lets a response leave out properties the client did not ask for (fields=)
+@JsonFilter(Product.JSON_FILTER)
 public class Product
 {
+    /**
+     * Id of the Jackson filter that leaves out unrequested properties.
+     */
+    public static final String JSON_FILTER = "productFields";
+
     private int productId;
     private String name;
     private BigDecimal price;
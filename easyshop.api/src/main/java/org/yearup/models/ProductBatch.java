@@ -0,0 +1,40 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductBatch
+{
+    private List<Product> products = new ArrayList<>();
+    private List<Integer> missing = new ArrayList<>();
+
+    public ProductBatch()
+    {
+    }
+
+    public ProductBatch(List<Product> products, List<Integer> missing)
+    {
+        this.products = products;
+        this.missing = missing;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+
+    public List<Integer> getMissing()
+    {
+        return missing;
+    }
+
+    public void setMissing(List<Integer> missing)
+    {
+        this.missing = missing;
+    }
+}
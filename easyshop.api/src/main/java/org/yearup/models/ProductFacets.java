@@ -0,0 +1,111 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Product counts for the filter sidebar. Each facet is counted with every other filter applied but not its
+ * own, so the sidebar can show how many products picking a different value would return.
+ */
+public class ProductFacets
+{
+    public static class PriceBand
+    {
+        private BigDecimal min;
+        private BigDecimal max;
+        private int count;
+
+        public PriceBand()
+        {
+        }
+
+        public PriceBand(BigDecimal min, BigDecimal max, int count)
+        {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+
+        // inclusive
+        public BigDecimal getMin()
+        {
+            return min;
+        }
+
+        public void setMin(BigDecimal min)
+        {
+            this.min = min;
+        }
+
+        // exclusive; null for the last, open-ended band
+        public BigDecimal getMax()
+        {
+            return max;
+        }
+
+        public void setMax(BigDecimal max)
+        {
+            this.max = max;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public void setCount(int count)
+        {
+            this.count = count;
+        }
+    }
+
+    private int total;
+    private Map<Integer, Integer> categories = new LinkedHashMap<>();
+    private Map<String, Integer> colors = new LinkedHashMap<>();
+    private List<PriceBand> prices = new ArrayList<>();
+
+    // products matching every filter
+    public int getTotal()
+    {
+        return total;
+    }
+
+    public void setTotal(int total)
+    {
+        this.total = total;
+    }
+
+    // category id -> count
+    public Map<Integer, Integer> getCategories()
+    {
+        return categories;
+    }
+
+    public void setCategories(Map<Integer, Integer> categories)
+    {
+        this.categories = categories;
+    }
+
+    public Map<String, Integer> getColors()
+    {
+        return colors;
+    }
+
+    public void setColors(Map<String, Integer> colors)
+    {
+        this.colors = colors;
+    }
+
+    public List<PriceBand> getPrices()
+    {
+        return prices;
+    }
+
+    public void setPrices(List<PriceBand> prices)
+    {
+        this.prices = prices;
+    }
+}
@@ -0,0 +1,103 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductImportResult
+{
+    // keep the response small even when a whole file is rejected
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    public static class RowError
+    {
+        private long row;
+        private String message;
+
+        public RowError()
+        {
+        }
+
+        public RowError(long row, String message)
+        {
+            this.row = row;
+            this.message = message;
+        }
+
+        public long getRow()
+        {
+            return row;
+        }
+
+        public void setRow(long row)
+        {
+            this.row = row;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        public void setMessage(String message)
+        {
+            this.message = message;
+        }
+    }
+
+    private long imported;
+    private long failed;
+    private long durationMillis;
+    private List<RowError> errors = new ArrayList<>();
+
+    public void recordImported()
+    {
+        imported++;
+    }
+
+    public void recordFailed(long row, String message)
+    {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS)
+            errors.add(new RowError(row, message));
+    }
+
+    public long getImported()
+    {
+        return imported;
+    }
+
+    public void setImported(long imported)
+    {
+        this.imported = imported;
+    }
+
+    public long getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed(long failed)
+    {
+        this.failed = failed;
+    }
+
+    public long getDurationMillis()
+    {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis)
+    {
+        this.durationMillis = durationMillis;
+    }
+
+    public List<RowError> getErrors()
+    {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors)
+    {
+        this.errors = errors;
+    }
+}
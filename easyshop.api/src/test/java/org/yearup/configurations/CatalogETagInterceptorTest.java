@@ -0,0 +1,111 @@
+package org.yearup.configurations;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.yearup.data.CatalogVersion;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CatalogETagInterceptorTest
+{
+    private final CatalogVersion catalogVersion = new CatalogVersion();
+    private final CatalogETagInterceptor interceptor = new CatalogETagInterceptor(catalogVersion, 60);
+    private final String etag = "\"" + catalogVersion.tag() + "\"";
+
+    @Test
+    public void preHandle_shouldAnswer304_whenAnyListedTagMatches()
+    {
+        // arrange
+        MockHttpServletRequest request = get("\"other\", W/" + etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // act
+        boolean proceed = interceptor.preHandle(request, response, null);
+
+        // assert
+        assertFalse(proceed);
+        assertEquals(304, response.getStatus());
+        assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("public, max-age=60, must-revalidate", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    public void preHandle_shouldLetTheHandlerRun_forAStarOrAnOldTag()
+    {
+        for (String ifNoneMatch : new String[] { "*", etag })
+        {
+            // arrange
+            if (ifNoneMatch.equals(etag))
+                catalogVersion.advance();
+            MockHttpServletRequest request = get(ifNoneMatch);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            // act
+            boolean proceed = interceptor.preHandle(request, response, null);
+
+            // assert
+            assertTrue(proceed, "Because '" + ifNoneMatch + "' must not turn a missing product's 404 into a 304.");
+            assertEquals(200, response.getStatus());
+            assertEquals("\"" + catalogVersion.tag() + "\"", request.getAttribute(CatalogETagInterceptor.ETAG_ATTRIBUTE));
+        }
+    }
+
+    @Test
+    public void preHandle_shouldIgnoreWrites()
+    {
+        // arrange
+        MockHttpServletRequest request = get(etag);
+        request.setMethod("PUT");
+
+        // act
+        boolean proceed = interceptor.preHandle(request, new MockHttpServletResponse(), null);
+
+        // assert
+        assertTrue(proceed);
+        assertNull(request.getAttribute(CatalogETagInterceptor.ETAG_ATTRIBUTE));
+    }
+
+    @Test
+    public void beforeBodyWrite_shouldTagSuccessfulBodies_only() throws Exception
+    {
+        // arrange
+        CatalogETagAdvice advice = new CatalogETagAdvice();
+        MockHttpServletRequest request = get(null);
+        interceptor.preHandle(request, new MockHttpServletResponse(), null);
+        MockHttpServletResponse ok = new MockHttpServletResponse();
+        MockHttpServletResponse notFound = new MockHttpServletResponse();
+        notFound.setStatus(404);
+
+        // act
+        write(advice, request, ok);
+        write(advice, request, notFound);
+
+        // assert
+        assertEquals(etag, ok.getHeader(HttpHeaders.ETAG));
+        assertEquals("public, max-age=60, must-revalidate", ok.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertNull(notFound.getHeader(HttpHeaders.ETAG), "Because an error body must never be stored under the catalog tag.");
+    }
+
+    private static void write(CatalogETagAdvice advice, MockHttpServletRequest request, MockHttpServletResponse response) throws Exception
+    {
+        ServletServerHttpResponse serverResponse = new ServletServerHttpResponse(response);
+        advice.beforeBodyWrite("body", mock(MethodParameter.class), MediaType.APPLICATION_JSON, null,
+                new ServletServerHttpRequest(request), serverResponse);
+        serverResponse.flush();
+    }
+
+    private static MockHttpServletRequest get(String ifNoneMatch)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products/1");
+        if (ifNoneMatch != null)
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        return request;
+    }
+}
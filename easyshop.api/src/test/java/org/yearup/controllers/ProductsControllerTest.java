@@ -0,0 +1,161 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductImporter;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
+import org.yearup.data.search.ProductFacetIndex;
+import org.yearup.data.search.ProductSimilarityIndex;
+import org.yearup.data.search.ProductSuggestIndex;
+import org.yearup.models.Product;
+import org.yearup.models.ProductBatch;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductsControllerTest
+{
+    private final ProductDao productDao = mock(ProductDao.class);
+    private final ProductsController controller = new ProductsController(productDao, mock(ProductImporter.class),
+            new ObjectMapper(), mock(ProductFacetIndex.class), mock(ProductSuggestIndex.class),
+            mock(ProductSimilarityIndex.class), 10);
+
+    @Test
+    public void getByIds_shouldReportMissingIds_once_inTheOrderAskedFor()
+    {
+        // arrange
+        when(productDao.getByIds(List.of(5, 1, 9, 2))).thenReturn(List.of(product(5), product(1)));
+
+        // act
+        ProductBatch actual = (ProductBatch) controller.getByIds(Arrays.asList(5, 1, 9, 5, null, 2), null);
+
+        // assert
+        verify(productDao).getByIds(List.of(5, 1, 9, 2));
+        assertEquals(List.of(5, 1), actual.getProducts().stream().map(Product::getProductId).toList());
+        assertEquals(List.of(9, 2), actual.getMissing());
+    }
+
+    @Test
+    public void getByIds_shouldRejectEmptyAndOversizedBatches()
+    {
+        // act
+        ResponseStatusException empty = assertThrows(ResponseStatusException.class,
+                () -> controller.getByIds(List.of(), null));
+        ResponseStatusException oversized = assertThrows(ResponseStatusException.class,
+                () -> controller.getByIdsParam(Collections.nCopies(11, 1), null));
+
+        // assert
+        assertEquals(HttpStatus.BAD_REQUEST, empty.getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, oversized.getStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void export_shouldStreamAJsonArray_flushingTheFirstRowRightAway() throws Exception
+    {
+        // arrange
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        String[] afterFirstRow = new String[1];
+        doAnswer(call -> {
+            Consumer<Product> consumer = call.getArgument(1);
+            consumer.accept(product(1));
+            afterFirstRow[0] = output.toString(StandardCharsets.UTF_8);
+            consumer.accept(product(2));
+            return null;
+        }).when(productDao).stream(any(), any());
+
+        // act
+        ResponseEntity<StreamingResponseBody> response = controller.export(1, null, null, null, "-price", "name", "json");
+        response.getBody().writeTo(output);
+
+        // assert
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertEquals("[{\"productId\":1,\"name\":\"Product 1\"}", afterFirstRow[0], "Because the first row is flushed before the rest are read.");
+        assertEquals("[{\"productId\":1,\"name\":\"Product 1\"},{\"productId\":2,\"name\":\"Product 2\"}]",
+                output.toString(StandardCharsets.UTF_8));
+
+        ArgumentCaptor<ProductQuery> query = ArgumentCaptor.forClass(ProductQuery.class);
+        verify(productDao).stream(query.capture(), any());
+        assertEquals(1, query.getValue().getCategoryId());
+        assertEquals(ProductSort.PRICE, query.getValue().getSort());
+        assertTrue(query.getValue().isDescending());
+    }
+
+    @Test
+    public void export_shouldWriteOneProductPerLine_asNdjson() throws Exception
+    {
+        // arrange
+        doAnswer(call -> {
+            Consumer<Product> consumer = call.getArgument(1);
+            consumer.accept(product(1));
+            consumer.accept(product(2));
+            return null;
+        }).when(productDao).stream(any(), any());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // act
+        ResponseEntity<StreamingResponseBody> response = controller.export(null, null, null, null, null, "productId", "NDJSON");
+        response.getBody().writeTo(output);
+
+        // assert
+        assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+        assertEquals("{\"productId\":1}\n{\"productId\":2}\n", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void export_shouldRejectUnknownFormatsAndSorts_beforeStreaming()
+    {
+        // act
+        ResponseStatusException format = assertThrows(ResponseStatusException.class,
+                () -> controller.export(null, null, null, null, null, null, "csv"));
+        ResponseStatusException sort = assertThrows(ResponseStatusException.class,
+                () -> controller.export(null, null, null, null, "color", null, "json"));
+
+        // assert
+        assertEquals(HttpStatus.BAD_REQUEST, format.getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, sort.getStatus());
+        verify(productDao, never()).stream(any(), any());
+    }
+
+    @Test
+    public void importProducts_shouldReject_anUnknownCharset()
+    {
+        // arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/products/import");
+        request.setContentType("text/csv;charset=no-such-charset");
+        request.setContent("name,price,category_id\n".getBytes(StandardCharsets.UTF_8));
+
+        // act
+        ResponseStatusException actual = assertThrows(ResponseStatusException.class, () -> controller.importProducts(request));
+
+        // assert
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, actual.getStatus(), "Because a bad charset is the client's mistake, not a server error.");
+    }
+
+    private static Product product(int productId)
+    {
+        return new Product(productId, "Product " + productId, BigDecimal.ONE, 1, "", "", 1, false, "");
+    }
+}
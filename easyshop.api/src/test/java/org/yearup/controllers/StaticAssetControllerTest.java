@@ -0,0 +1,230 @@
+package org.yearup.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerMapping;
+import org.yearup.data.cache.ThumbnailCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StaticAssetControllerTest
+{
+    @TempDir
+    Path temp;
+
+    private Path root;
+    private StaticAssetController controller;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        root = Files.createDirectories(temp.resolve("ui"));
+        Files.writeString(root.resolve("app.js"), "0123456789");
+        controller = new StaticAssetController(root.toString(), mock(ThumbnailCache.class));
+    }
+
+    @Test
+    public void ui_shouldServeSingleRanges_andFallBackToTheWholeFile()
+    {
+        // act & assert
+        MockHttpServletResponse middle = get("app.js", HttpHeaders.RANGE, "bytes=2-4");
+        assertEquals(206, middle.getStatus());
+        assertEquals("bytes 2-4/10", middle.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("234", body(middle));
+
+        MockHttpServletResponse suffix = get("app.js", HttpHeaders.RANGE, "bytes=-3");
+        assertEquals("789", body(suffix), "Because bytes=-3 is the last three bytes.");
+
+        MockHttpServletResponse open = get("app.js", HttpHeaders.RANGE, "bytes=7-100");
+        assertEquals("bytes 7-9/10", open.getHeader(HttpHeaders.CONTENT_RANGE), "Because the end is clamped to the file.");
+
+        MockHttpServletResponse beyond = get("app.js", HttpHeaders.RANGE, "bytes=10-");
+        assertEquals(416, beyond.getStatus());
+        assertEquals("bytes */10", beyond.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertNull(beyond.getHeader(HttpHeaders.CACHE_CONTROL), "Because a 416 should not be cached.");
+
+        for (String whole : new String[] { "bytes=0-1,4-5", "bytes=abc", "items=0-1" })
+        {
+            MockHttpServletResponse response = get("app.js", HttpHeaders.RANGE, whole);
+            assertEquals(200, response.getStatus(), "Because '" + whole + "' falls back to the whole file.");
+            assertEquals("0123456789", body(response));
+        }
+    }
+
+    @Test
+    public void ui_shouldIgnoreTheRange_whenIfRangeNoLongerMatches()
+    {
+        // arrange
+        String etag = get("app.js").getHeader(HttpHeaders.ETAG);
+
+        // act
+        MockHttpServletResponse current = get("app.js", HttpHeaders.RANGE, "bytes=0-0", HttpHeaders.IF_RANGE, etag);
+        MockHttpServletResponse stale = get("app.js", HttpHeaders.RANGE, "bytes=0-0", HttpHeaders.IF_RANGE, "\"old\"");
+
+        // assert
+        assertEquals(206, current.getStatus());
+        assertEquals(200, stale.getStatus());
+        assertEquals("0123456789", body(stale));
+    }
+
+    @Test
+    public void ui_shouldAnswer304_toAMatchingETag_andChangeTheTagWithTheContent() throws Exception
+    {
+        // arrange
+        MockHttpServletResponse first = get("app.js");
+        String etag = first.getHeader(HttpHeaders.ETAG);
+
+        // act
+        MockHttpServletResponse revalidated = get("app.js", HttpHeaders.IF_NONE_MATCH, etag);
+        Files.writeString(root.resolve("app.js"), "changed!");
+        Files.setLastModifiedTime(root.resolve("app.js"), FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+        MockHttpServletResponse changed = get("app.js", HttpHeaders.IF_NONE_MATCH, etag);
+
+        // assert
+        assertEquals(304, revalidated.getStatus());
+        assertEquals(200, changed.getStatus());
+        assertNotEquals(etag, changed.getHeader(HttpHeaders.ETAG), "Because the tag is a hash of the contents.");
+        assertEquals("public, no-cache", first.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    public void ui_shouldPreferBrotliThenGzip_whenTheClientAcceptsThem() throws Exception
+    {
+        // arrange
+        Files.writeString(root.resolve("app.js.br"), "brotli");
+        Files.writeString(root.resolve("app.js.gz"), "gzip");
+
+        // act
+        MockHttpServletResponse both = get("app.js", HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br");
+        MockHttpServletResponse refused = get("app.js", HttpHeaders.ACCEPT_ENCODING, "gzip, br;q=0");
+        MockHttpServletResponse none = get("app.js");
+
+        // assert
+        assertEquals("br", both.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("brotli", body(both));
+        assertEquals("gzip", refused.getHeader(HttpHeaders.CONTENT_ENCODING), "Because q=0 refuses an encoding.");
+        assertEquals("gzip", body(refused));
+        assertNull(none.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("0123456789", body(none));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, none.getHeader(HttpHeaders.VARY));
+    }
+
+    @Test
+    public void ui_shouldNotFollowLinks_outOfTheRoot() throws Exception
+    {
+        // arrange
+        Path secret = Files.writeString(temp.resolve("secret.txt"), "password");
+        Files.createSymbolicLink(root.resolve("leak.txt"), secret);
+        Files.createSymbolicLink(root.resolve("app.js.gz"), secret);
+        Files.writeString(root.resolve(".env"), "hidden");
+        Files.createSymbolicLink(root.resolve("env.txt"), root.resolve(".env"));
+
+        // act & assert
+        assertEquals(404, get("leak.txt").getStatus(), "Because the link points outside the root.");
+        assertEquals(404, get("env.txt").getStatus(), "Because the link points at a hidden file.");
+        assertEquals(404, get("../secret.txt").getStatus());
+        MockHttpServletResponse gzip = get("app.js", HttpHeaders.ACCEPT_ENCODING, "gzip");
+        assertNull(gzip.getHeader(HttpHeaders.CONTENT_ENCODING), "Because a linked variant outside the root is ignored.");
+        assertEquals("0123456789", body(gzip));
+    }
+
+    @Test
+    public void image_shouldMarkAPendingThumbnailImmutable_onlyOnceItArrives() throws Exception
+    {
+        // arrange
+        Path thumbnail = Files.writeString(temp.resolve("apron-200.jpg"), "small");
+        CompletableFuture<Path> resize = new CompletableFuture<>();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // act
+        CompletableFuture<ResponseEntity<Resource>> pending = image(resize, response);
+        String whileWaiting = response.getHeader(HttpHeaders.CACHE_CONTROL);
+        resize.complete(thumbnail);
+
+        // assert
+        assertEquals("no-store", whileWaiting);
+        assertEquals(200, pending.get().getStatusCodeValue());
+        assertEquals("public, max-age=31536000, immutable", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    public void image_shouldNotMarkAFailedThumbnailImmutable() throws Exception
+    {
+        // arrange
+        CompletableFuture<Path> resize = new CompletableFuture<>();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // act
+        CompletableFuture<ResponseEntity<Resource>> pending = image(resize, response);
+        resize.completeExceptionally(new IOException("corrupt image"));
+
+        // assert
+        ExecutionException thrown = assertThrows(ExecutionException.class, pending::get);
+        ResponseStatusException status = (ResponseStatusException) thrown.getCause();
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, status.getStatus());
+        assertEquals("no-store", response.getHeader(HttpHeaders.CACHE_CONTROL), "Because a transient error must not be pinned for a year.");
+    }
+
+    private CompletableFuture<ResponseEntity<Resource>> image(CompletableFuture<Path> resize, MockHttpServletResponse response) throws Exception
+    {
+        Path products = Files.createDirectories(root.resolve("images/products"));
+        Files.writeString(products.resolve("apron.jpg"), "large");
+        ThumbnailCache thumbnails = mock(ThumbnailCache.class);
+        when(thumbnails.isSupportedWidth(200)).thenReturn(true);
+        when(thumbnails.thumbnail(any(), eq(200))).thenReturn(resize);
+        StaticAssetController images = new StaticAssetController(root.toString(), thumbnails);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/products/apron.jpg");
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, "/images/products/apron.jpg");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/images/**");
+        request.setParameter("w", "200");
+        return images.image(request, response);
+    }
+
+    private MockHttpServletResponse get(String path, String... headers)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ui/" + path);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, "/ui/" + path);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/ui/**");
+        for (int i = 0; i < headers.length; i += 2)
+        {
+            request.addHeader(headers[i], headers[i + 1]);
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try
+        {
+            controller.ui(request, response);
+        }
+        catch (Exception e)
+        {
+            throw new AssertionError(e);
+        }
+        return response;
+    }
+
+    private static String body(MockHttpServletResponse response)
+    {
+        return new String(response.getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
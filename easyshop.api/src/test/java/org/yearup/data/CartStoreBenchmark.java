@@ -0,0 +1,176 @@
+package org.yearup.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.yearup.data.cart.CartJournal;
+import org.yearup.data.cart.CartLoader;
+import org.yearup.data.cart.CartMutationListener;
+import org.yearup.data.cart.CartRecovery;
+import org.yearup.data.cart.ExpiredCartListener;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCartItem;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Cart store throughput at 1 to 32 threads, with and without the journal. Not part of the normal build; run it with
+ *
+ *     mvn test -Dtest=CartStoreBenchmark -Dbenchmark=true [-Dbenchmark.seconds=5] [-Dbenchmark.users=1000]
+ *
+ * Every thread picks a random user and adds an item (50%), changes a quantity (25%) or reads the cart (25%).
+ * The catalog is an in-memory stub, so the numbers are the store's own cost and not MySQL's.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CartStoreBenchmark
+{
+    private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+    private static final int PRODUCTS = 50;
+
+    private final long seconds = Long.getLong("benchmark.seconds", 3);
+    private final int users = Integer.getInteger("benchmark.users", 1_000);
+
+    @TempDir
+    Path temp;
+
+    @Test
+    public void throughput() throws Exception
+    {
+        System.out.printf("%-24s %8s %14s %14s%n", "store", "threads", "ops/s", "ops/s/thread");
+        run("memory", null);
+        run("journal, fsync 100 ms", journal("batched", 100));
+        run("journal, fsync each", journal("each", 0));
+    }
+
+    private void run(String name, CartJournal journal) throws Exception
+    {
+        try
+        {
+            for (int threads : THREADS)
+            {
+                ShoppingCartDaoImpl store = store(journal);
+                try
+                {
+                    // the first pass warms up the JIT and fills the carts; only the second is reported
+                    measure(store, threads, Math.max(1, seconds / 3));
+                    double opsPerSecond = measure(store, threads, seconds);
+                    System.out.printf("%-24s %8d %,14.0f %,14.0f%n", name, threads, opsPerSecond, opsPerSecond / threads);
+                }
+                finally
+                {
+                    store.shutdown();
+                }
+            }
+        }
+        finally
+        {
+            if (journal != null)
+                journal.close();
+        }
+    }
+
+    private double measure(ShoppingCartDaoImpl store, int threads, long seconds) throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds) + TimeUnit.MILLISECONDS.toNanos(50);
+        List<Future<Long>> counts = new ArrayList<>();
+        try
+        {
+            for (int t = 0; t < threads; t++)
+            {
+                counts.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long operations = 0;
+                    start.await();
+                    while (System.nanoTime() < deadline)
+                    {
+                        int userId = 1 + random.nextInt(users);
+                        int productId = 1 + random.nextInt(PRODUCTS);
+                        int choice = random.nextInt(4);
+                        if (choice < 2)
+                            store.addItemToCart(userId, item(productId));
+                        else if (choice == 2)
+                            store.updateItemQuantity(userId, productId, 1 + random.nextInt(5));
+                        else
+                            store.getByUserId(userId);
+                        operations++;
+                    }
+                    return operations;
+                }));
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            long total = 0;
+            for (Future<Long> count : counts)
+            {
+                total += count.get();
+            }
+            return total / ((System.nanoTime() - begin) / 1e9);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private CartJournal journal(String directory, long fsyncIntervalMs) throws Exception
+    {
+        return new CartJournal(temp.resolve(directory).toString(), 64 * 1024 * 1024, fsyncIntervalMs, 3600);
+    }
+
+    private static ShoppingCartDaoImpl store(CartJournal journal)
+    {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        if (journal != null)
+            beans.addBean("journal", journal);
+        return new ShoppingCartDaoImpl(catalog(), beans.getBeanProvider(CartLoader.class),
+                beans.getBeanProvider(CartMutationListener.class), beans.getBeanProvider(CartRecovery.class),
+                beans.getBeanProvider(ExpiredCartListener.class), 60, 1000, Clock.systemUTC());
+    }
+
+    // stubOnly: a normal mock records every call, which would be most of what gets measured
+    @SuppressWarnings("unchecked")
+    private static ProductDao catalog()
+    {
+        List<Product> products = new ArrayList<>();
+        for (int id = 0; id <= PRODUCTS; id++)
+        {
+            products.add(product(id));
+        }
+        ProductDao productDao = mock(ProductDao.class, withSettings().stubOnly());
+        when(productDao.getByIds(any())).thenAnswer(call -> ((Collection<Integer>) call.getArgument(0))
+                .stream().map(products::get).toList());
+        return productDao;
+    }
+
+    private static Product product(int productId)
+    {
+        return new Product(productId, "Product " + productId, BigDecimal.ONE, 1, "", "", 1_000_000, false, "");
+    }
+
+    private static ShoppingCartItem item(int productId)
+    {
+        ShoppingCartItem item = new ShoppingCartItem();
+        item.setProduct(product(productId));
+        return item;
+    }
+}
@@ -0,0 +1,62 @@
+package org.yearup.data;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.CatalogChanges;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogChangeLogTest
+{
+    @Test
+    public void since_shouldReturnLatestStatePerEntity_andResetWhenTooOld()
+    {
+        // arrange
+        CatalogChangeLog log = new CatalogChangeLog(4);
+        long start = log.latest();
+        log.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.CREATED, 1, product(1, "Hat")));
+        log.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 1, product(1, "Cap")));
+        log.onCategoryChanged(new CategoryChangedEvent(CategoryChangedEvent.Type.DELETED, 7, null));
+
+        // act
+        CatalogChanges actual = log.since(start);
+
+        // assert
+        assertFalse(actual.isReset());
+        assertEquals(start + 3, actual.getSequence());
+        assertEquals(1, actual.getProducts().size(), "Because both writes to product 1 collapse into one upsert.");
+        assertEquals("Cap", actual.getProducts().get(0).getName());
+        assertEquals(List.of(7), actual.getDeletedCategoryIds());
+        assertTrue(log.since(actual.getSequence()).getProducts().isEmpty());
+
+        log.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 1, null));
+        log.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 2, null));
+        assertTrue(log.since(start).isReset(), "Because the first write has been overwritten in a ring of 4.");
+        assertEquals(List.of(1, 2), log.since(start + 1).getDeletedProductIds());
+    }
+
+    @Test
+    public void onProductsCreated_shouldLogEveryProductOfTheChunk()
+    {
+        // arrange
+        CatalogChangeLog log = new CatalogChangeLog(10);
+        long start = log.latest();
+
+        // act
+        log.onProductsCreated(new ProductsCreatedEvent(List.of(product(4, "Hat"), product(5, "Cap"))));
+
+        // assert
+        CatalogChanges actual = log.since(start);
+        assertEquals(start + 2, actual.getSequence());
+        assertEquals(List.of("Hat", "Cap"), actual.getProducts().stream().map(Product::getName).toList());
+    }
+
+    private static Product product(int id, String name)
+    {
+        return new Product(id, name, BigDecimal.ONE, 1, "", "", 1, false, "");
+    }
+}
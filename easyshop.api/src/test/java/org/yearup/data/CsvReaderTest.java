@@ -0,0 +1,55 @@
+package org.yearup.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest
+{
+    @Test
+    public void readRecord_shouldHandleQuotedCommasEscapedQuotesAndLineBreaks() throws Exception
+    {
+        // arrange
+        CsvReader csv = new CsvReader(new StringReader("a,\"b,c\",\"say \"\"hi\"\"\"\r\n\"two\nlines\",,x\ny"));
+
+        // act
+        List<String> first = csv.readRecord();
+        List<String> second = csv.readRecord();
+        List<String> third = csv.readRecord();
+        List<String> end = csv.readRecord();
+
+        // assert
+        assertEquals(List.of("a", "b,c", "say \"hi\""), first);
+        assertEquals(List.of("two\nlines", "", "x"), second, "Because a quoted field may span lines and CRLF, CR or LF end a record.");
+        assertEquals(List.of("y"), third, "Because the last record needs no line break.");
+        assertNull(end);
+    }
+
+    @Test
+    public void readRecord_shouldKeepQuotesInsideAnUnquotedField() throws Exception
+    {
+        // arrange
+        CsvReader csv = new CsvReader(new StringReader("12\" pan,ok\r"));
+
+        // act
+        List<String> actual = csv.readRecord();
+
+        // assert
+        assertEquals(List.of("12\" pan", "ok"), actual);
+        assertNull(csv.readRecord());
+    }
+
+    @Test
+    public void readRecord_shouldReject_anUnterminatedQuote() throws Exception
+    {
+        // arrange
+        CsvReader csv = new CsvReader(new StringReader("ok\n\"never closed,1\n2\n"));
+        csv.readRecord();
+
+        // act & assert
+        assertThrows(IllegalArgumentException.class, csv::readRecord);
+    }
+}
@@ -0,0 +1,135 @@
+package org.yearup.data;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCursorTest
+{
+    @Test
+    public void decode_shouldRoundTrip_everySortAndNullValues()
+    {
+        // arrange
+        List<ProductCursor> cursors = List.of(
+                new ProductCursor(ProductSort.ID, false, "7", 7),
+                new ProductCursor(ProductSort.PRICE, true, "19.90", 3),
+                new ProductCursor(ProductSort.PRICE, false, null, 3),
+                new ProductCursor(ProductSort.NAME, false, "a|b", 4),
+                new ProductCursor(ProductSort.NAME, true, "", 5),
+                new ProductCursor(ProductSort.NAME, true, null, 6)
+        );
+
+        for (ProductCursor cursor : cursors)
+        {
+            // act
+            ProductCursor actual = ProductCursor.decode(cursor.encode());
+
+            // assert
+            assertEquals(cursor, actual, "Because a cursor must decode to the position it was issued for.");
+        }
+    }
+
+    @Test
+    public void decode_shouldReject_valuesTheKeysetCannotBind()
+    {
+        // arrange
+        String badPrice = new ProductCursor(ProductSort.PRICE, false, "cheap", 1).encode();
+        String badId = new ProductCursor(ProductSort.ID, false, null, 1).encode();
+
+        // act & assert
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode(badPrice));
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode(badId));
+        assertThrows(IllegalArgumentException.class, () -> ProductCursor.decode("not a cursor"));
+    }
+
+    @Test
+    public void after_shouldHandleProducts_withoutAPriceOrName()
+    {
+        // arrange
+        Product product = new Product();
+        product.setProductId(9);
+
+        // act
+        ProductCursor byPrice = ProductCursor.after(product, ProductSort.PRICE, false);
+        ProductCursor byName = ProductCursor.after(product, ProductSort.NAME, true);
+
+        // assert
+        assertNull(byPrice.getLastValue());
+        assertNull(byName.getLastValue());
+    }
+
+    @Test
+    public void page_shouldVisitEveryProductOnce_whenPagingByNameOrPrice()
+    {
+        // arrange
+        List<Product> products = List.of(
+                product(1, "apple", "3.00"),
+                product(2, "Banana", null),
+                product(3, "banana", "1.00"),
+                product(4, null, "1.00"),
+                product(5, "🍎 apple", "2.00"),
+                product(6, "Ａpple", null),
+                product(7, "apple", "3.00")
+        );
+
+        for (ProductSort sort : ProductSort.values())
+        {
+            for (boolean descending : new boolean[] { false, true })
+            {
+                // act
+                List<Product> visited = pageThrough(products, sort, descending);
+
+                // assert
+                List<Product> expected = new ArrayList<>(products);
+                expected.sort(sort.comparator(descending));
+                assertEquals(expected, visited, "Because paging by " + sort + (descending ? " desc" : "") + " must not skip or repeat products.");
+            }
+        }
+    }
+
+    @Test
+    public void nameOrder_shouldBeCodePointOrder_likeTheBinarySqlKey()
+    {
+        // act & assert
+        assertTrue(ProductSort.compareCodePoints("Banana", "apple") < 0, "Because upper case sorts before lower case.");
+        assertTrue(ProductSort.compareCodePoints("apple", "apples") < 0, "Because a prefix sorts first.");
+        // U+1F34E is four utf8mb4 bytes starting 0xF0, after U+FF21's 0xEF; UTF-16 would put it first
+        assertTrue(ProductSort.compareCodePoints("🍎", "Ａ") > 0, "Because supplementary characters sort by code point.");
+        assertEquals(0, ProductSort.compareCodePoints("apple", "apple"));
+    }
+
+    private static List<Product> pageThrough(List<Product> products, ProductSort sort, boolean descending)
+    {
+        List<Product> visited = new ArrayList<>();
+        ProductCursor after = null;
+        while (true)
+        {
+            ProductQuery query = new ProductQuery();
+            query.setSort(sort);
+            query.setDescending(descending);
+            query.setLimit(2);
+            // every page starts from a decoded token, as it would from a client
+            query.setAfter(after == null ? null : ProductCursor.decode(after.encode()));
+
+            List<Product> page = query.page(products);
+            if (page.isEmpty())
+                return visited;
+            visited.addAll(page);
+            after = ProductCursor.after(page.get(page.size() - 1), sort, descending);
+        }
+    }
+
+    private static Product product(int id, String name, String price)
+    {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setName(name);
+        product.setPrice(price == null ? null : new BigDecimal(price));
+        return product;
+    }
+}
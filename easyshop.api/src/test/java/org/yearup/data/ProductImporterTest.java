@@ -0,0 +1,109 @@
+package org.yearup.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportResult;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductImporterTest
+{
+    private final ProductDao productDao = mock(ProductDao.class);
+    private final List<List<String>> chunks = new ArrayList<>();
+    private final ProductImporter importer = new ProductImporter(productDao, new ObjectMapper(), 2);
+
+    ProductImporterTest()
+    {
+        // remembers each chunk's names; a product named "dup" fails in the database
+        when(productDao.createAll(any())).thenAnswer(call -> {
+            List<Product> products = call.getArgument(0);
+            chunks.add(products.stream().map(Product::getName).toList());
+            return products.stream().map(p -> p.getName().equals("dup") ? "Duplicate entry" : null).toList();
+        });
+    }
+
+    @Test
+    public void importCsv_shouldLoadInChunks_andReportBadRowsByNumber() throws Exception
+    {
+        // arrange
+        String csv = "Name,PRICE,category_id,stock\n" +
+                "\"Pan, 12\"\"\",10.50,1,3\n" +
+                "Cup,abc,1,\n" +
+                "\n" +
+                "Bowl,2,1,\n" +
+                "dup,3,1,\n" +
+                "Plate,-1,1,\n" +
+                "Fork,1,2,5\n";
+
+        // act
+        ProductImportResult result = importer.importCsv(new StringReader(csv));
+
+        // assert
+        assertEquals(List.of(List.of("Pan, 12\"", "Bowl"), List.of("dup", "Fork")), chunks,
+                "Because rows go to the database two at a time, skipping the ones that failed to parse.");
+        assertEquals(3, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertEquals(List.of(3L, 7L, 6L), rows(result), "Because parse errors are reported as they are read and insert errors when their chunk is written.");
+    }
+
+    @Test
+    public void importCsv_shouldKeepEarlierChunks_whenAQuoteIsNeverClosed() throws Exception
+    {
+        // arrange
+        String csv = "name,price,category_id\n" +
+                "A,1,1\n" +
+                "B,1,1\n" +
+                "C,1,1\n" +
+                "\"D,1,1\n" +
+                "E,1,1\n";
+
+        // act
+        ProductImportResult result = importer.importCsv(new StringReader(csv));
+
+        // assert
+        assertEquals(List.of(List.of("A", "B"), List.of("C")), chunks);
+        assertEquals(3, result.getImported());
+        assertEquals(List.of(5L), rows(result), "Because the row with the open quote is reported instead of failing the whole request.");
+    }
+
+    @Test
+    public void importCsv_shouldRejectAHeader_withoutTheRequiredColumns()
+    {
+        // act & assert
+        assertThrows(IllegalArgumentException.class, () -> importer.importCsv(new StringReader("name,price\nA,1\n")));
+        assertEquals(Collections.emptyList(), chunks);
+    }
+
+    @Test
+    public void importNdjson_shouldReportMalformedLines_andLoadTheRest() throws Exception
+    {
+        // arrange
+        String ndjson = "{\"name\":\"A\",\"price\":1,\"categoryId\":1}\n" +
+                "{\"name\":\n" +
+                "\n" +
+                "{\"name\":\"B\",\"price\":2,\"categoryId\":1}\n" +
+                "{\"price\":2,\"categoryId\":1}\n";
+
+        // act
+        ProductImportResult result = importer.importNdjson(new StringReader(ndjson));
+
+        // assert
+        assertEquals(List.of(List.of("A", "B")), chunks);
+        assertEquals(2, result.getImported());
+        assertEquals(List.of(2L, 5L), rows(result));
+    }
+
+    private static List<Long> rows(ProductImportResult result)
+    {
+        return result.getErrors().stream().map(ProductImportResult.RowError::getRow).toList();
+    }
+}
@@ -0,0 +1,34 @@
+package org.yearup.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductQueryTest
+{
+    @Test
+    public void normalized_shouldOnlyFoldWhatMySqlIgnores()
+    {
+        // arrange
+        ProductQuery plain = query("red", "10", "running shoes");
+        ProductQuery equivalent = query("RED  ", "10.00", "Running Shoes");
+        ProductQuery leadingSpace = query(" red", "10", "running shoes");
+        ProductQuery doubleSpace = query("red", "10", "running  shoes");
+
+        // act & assert
+        assertEquals(plain.normalized(), equivalent.normalized(), "Because MySQL ignores case, trailing spaces and price scale.");
+        assertNotEquals(plain.normalized(), leadingSpace.normalized(), "Because color = ? does not ignore leading spaces.");
+        assertNotEquals(plain.normalized(), doubleSpace.normalized(), "Because the text is passed on as it was typed.");
+    }
+
+    private static ProductQuery query(String color, String minPrice, String text)
+    {
+        ProductQuery query = new ProductQuery();
+        query.setColor(color);
+        query.setMinPrice(new BigDecimal(minPrice));
+        query.setText(text);
+        return query;
+    }
+}
@@ -0,0 +1,225 @@
+package org.yearup.data;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.yearup.data.cart.CartLoader;
+import org.yearup.data.cart.CartMutationListener;
+import org.yearup.data.cart.CartRecovery;
+import org.yearup.data.cart.ExpiredCartListener;
+import org.yearup.data.cart.IntIntMap;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCartItem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class ShoppingCartDaoImplTest
+{
+    @Test
+    public void addItemToCart_shouldNotLoseConcurrentUpdates() throws Exception
+    {
+        // arrange
+        ShoppingCartDaoImpl dao = dao(null);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+
+        // act
+        try
+        {
+            for (int t = 0; t < 8; t++)
+            {
+                int userId = t % 2 + 1;
+                done.add(threads.submit(() -> {
+                    for (int i = 0; i < 1_000; i++)
+                    {
+                        dao.addItemToCart(userId, item(i % 5 + 1));
+                    }
+                }));
+            }
+            for (Future<?> future : done)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            threads.shutdownNow();
+        }
+
+        // assert
+        for (int userId = 1; userId <= 2; userId++)
+        {
+            List<ShoppingCartItem> items = dao.getItemsByUserId(userId);
+            assertEquals(5, items.size());
+            assertEquals(4_000, items.stream().mapToInt(ShoppingCartItem::getQuantity).sum(),
+                    "Because four threads each added 1000 items to this cart.");
+        }
+    }
+
+    @Test
+    public void getItemsByUserId_shouldReturnACopy()
+    {
+        // arrange
+        ShoppingCartDaoImpl dao = dao(null);
+        dao.addItemToCart(1, item(7));
+
+        // act
+        dao.getItemsByUserId(1).get(0).setQuantity(99);
+
+        // assert
+        assertEquals(1, dao.getItemsByUserId(1).get(0).getQuantity());
+    }
+
+    @Test
+    public void getItemsByUserId_shouldHydrateProducts_andDropDeletedOnes()
+    {
+        // arrange
+        ShoppingCartDaoImpl dao = dao(null);
+        dao.addItemToCart(1, item(3));
+        dao.addItemToCart(1, item(404));
+        dao.addItemToCart(1, item(3));
+
+        // act
+        List<ShoppingCartItem> actual = dao.getItemsByUserId(1);
+
+        // assert
+        assertEquals(1, actual.size(), "Because product 404 is no longer in the catalog.");
+        assertEquals("Product 3", actual.get(0).getProduct().getName());
+        assertEquals(2, actual.get(0).getQuantity());
+    }
+
+    @Test
+    public void firstUse_shouldLoadTheCart_andReportChanges()
+    {
+        // arrange
+        IntIntMap saved = new IntIntMap();
+        saved.put(3, 2);
+        CartMutationListener listener = mock(CartMutationListener.class);
+        ShoppingCartDaoImpl dao = dao(userId -> saved, listener);
+
+        // act
+        dao.addItemToCart(1, item(3));
+        dao.removeItemFromCart(1, 5);
+        dao.clearCart(2);
+
+        // assert
+        assertEquals(3, dao.getItemsByUserId(1).get(0).getQuantity());
+        verify(listener).lineSet(1, 3, 3);
+        verify(listener).cartCleared(2);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void expireIdleCarts_shouldEvictOnlyCartsIdleForTheTtl()
+    {
+        // arrange
+        ExpiredCartListener expired = mock(ExpiredCartListener.class);
+        CartMutationListener listener = mock(CartMutationListener.class);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("expired", expired);
+        Clock clock = mock(Clock.class);
+        long start = 1_700_000_000_000L;
+        when(clock.millis()).thenReturn(start);
+        ShoppingCartDaoImpl dao = dao(null, beans, clock, listener);
+        dao.addItemToCart(1, item(3));
+        dao.addItemToCart(2, item(4));
+
+        // act
+        when(clock.millis()).thenReturn(start + TimeUnit.MINUTES.toMillis(30));
+        dao.expireIdleCarts(clock.millis());
+        dao.getItemsByUserId(2);
+        when(clock.millis()).thenReturn(start + TimeUnit.MINUTES.toMillis(61));
+        dao.expireIdleCarts(clock.millis());
+
+        // assert
+        verify(expired).cartExpired(eq(1), any());
+        verify(listener).cartCleared(1);
+        assertTrue(dao.getItemsByUserId(1).isEmpty(), "Because cart 1 was idle for an hour.");
+        assertEquals(1, dao.getItemsByUserId(2).size(), "Because cart 2 was used after 30 minutes.");
+    }
+
+    @Test
+    public void expireIdleCarts_shouldKeepExpiringOtherCarts_whenAListenerThrows()
+    {
+        // arrange
+        CartMutationListener listener = mock(CartMutationListener.class);
+        doThrow(new UncheckedIOException(new IOException("disk full"))).doNothing().when(listener).cartCleared(1);
+        Clock clock = mock(Clock.class);
+        long start = 1_700_000_000_000L;
+        when(clock.millis()).thenReturn(start);
+        ShoppingCartDaoImpl dao = dao(null, new StaticListableBeanFactory(), clock, listener);
+        dao.addItemToCart(1, item(3));
+        dao.addItemToCart(2, item(4));
+
+        // act
+        when(clock.millis()).thenReturn(start + TimeUnit.MINUTES.toMillis(61));
+        dao.expireIdleCarts(clock.millis());
+        when(clock.millis()).thenReturn(start + TimeUnit.MINUTES.toMillis(122));
+        dao.expireIdleCarts(clock.millis());
+
+        // assert
+        verify(listener).cartCleared(2);
+        verify(listener, times(2)).cartCleared(1);
+        assertTrue(dao.getItemsByUserId(1).isEmpty(), "Because cart 1 was kept after the failure and expired on the next try.");
+    }
+
+    private static ShoppingCartDaoImpl dao(CartLoader loader, CartMutationListener... listeners)
+    {
+        return dao(loader, new StaticListableBeanFactory(), Clock.systemUTC(), listeners);
+    }
+
+    private static ShoppingCartDaoImpl dao(CartLoader loader, StaticListableBeanFactory beans, Clock clock,
+                                           CartMutationListener... listeners)
+    {
+        if (loader != null)
+            beans.addBean("cartLoader", loader);
+        for (int i = 0; i < listeners.length; i++)
+        {
+            beans.addBean("cartListener" + i, listeners[i]);
+        }
+        return new ShoppingCartDaoImpl(catalog(), beans.getBeanProvider(CartLoader.class),
+                beans.getBeanProvider(CartMutationListener.class), beans.getBeanProvider(CartRecovery.class),
+                beans.getBeanProvider(ExpiredCartListener.class), 60, 1000, clock);
+    }
+
+    // every product exists except 404
+    @SuppressWarnings("unchecked")
+    private static ProductDao catalog()
+    {
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.getByIds(any())).thenAnswer(call -> ((Collection<Integer>) call.getArgument(0))
+                .stream().filter(id -> id != 404).map(ShoppingCartDaoImplTest::product).toList());
+        return productDao;
+    }
+
+    private static Product product(int productId)
+    {
+        return new Product(productId, "Product " + productId, BigDecimal.ONE, 1, "", "", 10, false, "");
+    }
+
+    private static ShoppingCartItem item(int productId)
+    {
+        ShoppingCartItem item = new ShoppingCartItem();
+        item.setProduct(product(productId));
+        return item;
+    }
+}
@@ -0,0 +1,156 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.data.search.ProductSearchIndex;
+import org.yearup.data.search.ProductTextIndex;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingProductDaoTest
+{
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getByIds_shouldMixHitsAndMisses_inTheOrderAskedFor()
+    {
+        // arrange
+        MySqlProductDao mysql = mock(MySqlProductDao.class);
+        when(mysql.getByIds(any())).thenAnswer(call -> ((Collection<Integer>) call.getArgument(0))
+                .stream().filter(id -> id != 404).map(CachingProductDaoTest::product).toList());
+        CachingProductDao dao = dao(mysql);
+        dao.getByIds(List.of(2));
+
+        // act
+        List<Product> actual = dao.getByIds(List.of(3, 2, 404, 3, 1));
+
+        // assert
+        assertEquals(List.of(3, 2, 1), actual.stream().map(Product::getProductId).toList());
+        verify(mysql).getByIds(List.of(3, 404, 1));
+    }
+
+    @Test
+    public void getByIds_shouldNotCache_aProductThatChangedWhileItWasRead()
+    {
+        // arrange
+        MySqlProductDao mysql = mock(MySqlProductDao.class);
+        CachingProductDao[] dao = new CachingProductDao[1];
+        when(mysql.getByIds(any())).thenAnswer(call -> {
+            // an update commits between the SELECT and the cache fill
+            dao[0].onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 7, product(7)));
+            return List.of(product(7));
+        });
+        dao[0] = dao(mysql);
+
+        // act
+        dao[0].getByIds(List.of(7));
+        dao[0].getByIds(List.of(7));
+
+        // assert
+        verify(mysql, times(2)).getByIds(any());
+    }
+
+    @Test
+    public void getById_shouldNotCache_aProductThatChangedWhileItWasRead()
+    {
+        // arrange
+        MySqlProductDao mysql = mock(MySqlProductDao.class);
+        CachingProductDao[] dao = new CachingProductDao[1];
+        when(mysql.getByIds(any())).thenAnswer(call -> {
+            dao[0].onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 7, product(7)));
+            return List.of(product(7));
+        });
+        dao[0] = dao(mysql);
+
+        // act
+        dao[0].getById(7);
+        dao[0].getById(7);
+
+        // assert
+        verify(mysql, times(2)).getByIds(any());
+    }
+
+    @Test
+    public void getById_shouldNotCache_aSharedLookupThatAWriteOvertook() throws Exception
+    {
+        // arrange
+        MySqlProductDao mysql = mock(MySqlProductDao.class);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        when(mysql.getByIds(any())).thenAnswer(call -> {
+            reading.countDown();
+            written.await();
+            return List.of(product(7));
+        }).thenReturn(List.of(product(7)));
+        CachingProductDao dao = dao(mysql);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try
+        {
+            // act: the second caller joins the first one's lookup, then the product is updated
+            Future<Product> first = threads.submit(() -> dao.getById(7));
+            reading.await();
+            Future<Product> joined = threads.submit(() -> dao.getById(7));
+            Thread.sleep(100);
+            dao.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 7, product(7)));
+            written.countDown();
+            first.get();
+            joined.get();
+            dao.getById(7);
+        }
+        finally
+        {
+            threads.shutdownNow();
+        }
+
+        // assert
+        verify(mysql, times(2)).getByIds(any());
+    }
+
+    @Test
+    public void warm_shouldSkip_productsWrittenSinceTheStamp()
+    {
+        // arrange
+        MySqlProductDao mysql = mock(MySqlProductDao.class);
+        when(mysql.getByIds(any())).thenReturn(List.of(product(7)));
+        CachingProductDao dao = dao(mysql);
+        long stamp = dao.stamp();
+        dao.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 7, product(7)));
+
+        // act
+        int cached = dao.warm(List.of(product(7), product(8)), stamp);
+
+        // assert
+        assertEquals(1, cached, "Because product 7 changed after the catalog was read.");
+        dao.getById(7);
+        verify(mysql).getByIds(any());
+    }
+
+    static CachingProductDao dao(MySqlProductDao mysql)
+    {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        return new CachingProductDao(mysql, new CatalogVersion(), beans.getBeanProvider(ProductSearchIndex.class),
+                beans.getBeanProvider(ProductTextIndex.class), 100, 100, 0, 100);
+    }
+
+    static Product product(int productId)
+    {
+        return new Product(productId, "Product " + productId, BigDecimal.TEN, 1, "", "Red", 5, false, "");
+    }
+}
@@ -0,0 +1,62 @@
+package org.yearup.data.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactProductTest
+{
+    @Test
+    public void toProduct_shouldRoundTrip_andSerializeLikeProduct() throws Exception
+    {
+        // arrange
+        CompactProduct.Dictionary<Integer> categories = new CompactProduct.Dictionary<>();
+        CompactProduct.Dictionary<String> colors = new CompactProduct.Dictionary<>();
+        String description = "A light running shoe. ".repeat(20);
+        Product original = new Product(7, "Runner", new BigDecimal("49.99"), 3, description, "Red", 12, true, "runner.jpg");
+
+        // act
+        CompactProduct compact = CompactProduct.of(original, categories, colors);
+        Product actual = compact.toProduct(categories, colors);
+
+        // assert
+        assertEquals(new BigDecimal("49.99"), actual.getPrice());
+        assertEquals(3, actual.getCategoryId());
+        assertEquals("Red", actual.getColor());
+        assertEquals(description, actual.getDescription());
+        assertTrue(compact.estimatedBytes() < 48 + description.length(), "Because the repeated description compresses well.");
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setFilterProvider(new SimpleFilterProvider()
+                .addFilter(Product.JSON_FILTER, SimpleBeanPropertyFilter.serializeAll()));
+        assertEquals(mapper.writeValueAsString(original), mapper.writeValueAsString(compact.toProduct(categories, colors)));
+    }
+
+    @Test
+    public void of_shouldShareColors_andKeepNulls()
+    {
+        // arrange
+        CompactProduct.Dictionary<Integer> categories = new CompactProduct.Dictionary<>();
+        CompactProduct.Dictionary<String> colors = new CompactProduct.Dictionary<>();
+
+        // act
+        CompactProduct.of(new Product(1, "A", BigDecimal.ONE, 1, "", "Blue", 1, false, ""), categories, colors);
+        CompactProduct second = CompactProduct.of(new Product(2, "B", null, 1, null, null, 1, false, null), categories, colors);
+        Product actual = second.toProduct(categories, colors);
+
+        // assert
+        assertEquals(1, colors.size());
+        assertEquals(1, categories.size());
+        assertNull(actual.getPrice());
+        assertNull(actual.getColor());
+        assertNull(actual.getDescription());
+        assertNull(CompactProduct.of(new Product(3, "C", new BigDecimal("1.005"), 1, "", "", 1, false, ""), categories, colors),
+                "Because a price with fractions of a cent can't be stored as cents.");
+    }
+}
@@ -0,0 +1,68 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductBatchLoaderTest
+{
+    @Test
+    public void load_shouldShareIdenticalLookups_andBatchDistinctOnes() throws Exception
+    {
+        // arrange
+        List<List<Integer>> queries = Collections.synchronizedList(new ArrayList<>());
+        ProductBatchLoader loader = new ProductBatchLoader(ids -> {
+            queries.add(List.copyOf(ids));
+            return ids.stream().filter(id -> id != 4).map(ProductBatchLoaderTest::product).toList();
+        }, 200_000, 100);
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Product>> results = new ArrayList<>();
+        try
+        {
+            // act
+            for (int i = 0; i < 8; i++)
+            {
+                int id = i % 4 + 1;
+                results.add(threads.submit(() -> {
+                    start.await();
+                    return loader.load(id);
+                }));
+            }
+            start.countDown();
+
+            // assert
+            for (int i = 0; i < 8; i++)
+            {
+                Product product = results.get(i).get();
+                if (i % 4 + 1 == 4)
+                    assertNull(product);
+                else
+                    assertEquals(i % 4 + 1, product.getProductId());
+            }
+        }
+        finally
+        {
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, queries.size(), "Because every lookup arrived within one window.");
+        assertEquals(4, queries.get(0).size(), "Because each id should be queried once.");
+    }
+
+    private static Product product(int id)
+    {
+        return new Product(id, "Product " + id, BigDecimal.ONE, 1, "", "", 1, false, "");
+    }
+}
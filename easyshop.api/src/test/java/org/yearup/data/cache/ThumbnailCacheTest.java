@@ -0,0 +1,144 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailCacheTest
+{
+    @TempDir
+    Path temp;
+
+    private ThumbnailCache cache;
+
+    @AfterEach
+    public void shutdown()
+    {
+        if (cache != null)
+            cache.shutdown();
+    }
+
+    @Test
+    public void thumbnail_shouldResizeToTheWidth_andServeTheCopyNextTime() throws Exception
+    {
+        // arrange
+        cache = new ThumbnailCache(temp.resolve("cache").toString(), 1 << 20, new int[] { 100 }, 1, 4);
+        Path source = image("wide.png", 400, 200);
+
+        // act
+        Path first = cache.thumbnail(source, 100).get();
+        CompletableFuture<Path> second = cache.thumbnail(source, 100);
+
+        // assert
+        BufferedImage resized = ImageIO.read(first.toFile());
+        assertEquals(100, resized.getWidth());
+        assertEquals(50, resized.getHeight(), "Because the aspect ratio is kept.");
+        assertTrue(second.isDone(), "Because a variant already on disk needs no worker.");
+        assertEquals(first, second.get());
+    }
+
+    @Test
+    public void thumbnail_shouldShareOneResize_betweenConcurrentRequests() throws Exception
+    {
+        // arrange
+        cache = new ThumbnailCache(temp.resolve("cache").toString(), 1 << 24, new int[] { 100 }, 1, 4);
+        Path source = image("big.png", 3000, 3000);
+
+        // act
+        CompletableFuture<Path> first = cache.thumbnail(source, 100);
+        CompletableFuture<Path> second = cache.thumbnail(source, 100);
+
+        // assert
+        assertSame(first, second, "Because the second request joins the resize already in flight.");
+        first.get();
+        assertEquals(1, files(temp.resolve("cache")).size());
+    }
+
+    @Test
+    public void thumbnail_shouldRejectWork_beyondThePoolAndQueue() throws Exception
+    {
+        // arrange: one worker and one queued resize
+        cache = new ThumbnailCache(temp.resolve("cache").toString(), 1 << 24, new int[] { 100 }, 1, 1);
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            sources.add(image("big" + i + ".png", 2000, 2000));
+        }
+
+        // act
+        List<CompletableFuture<Path>> accepted = new ArrayList<>();
+        int rejected = 0;
+        for (Path source : sources)
+        {
+            try
+            {
+                accepted.add(cache.thumbnail(source, 100));
+            }
+            catch (RejectedExecutionException e)
+            {
+                rejected++;
+            }
+        }
+
+        // assert
+        assertTrue(rejected > 0, "Because a burst larger than the pool and queue must fail fast instead of piling up.");
+        for (CompletableFuture<Path> future : accepted)
+        {
+            assertNotNull(future.get());
+        }
+    }
+
+    @Test
+    public void thumbnail_shouldEvictTheLeastRecentlyUsed_pastTheSizeLimit() throws Exception
+    {
+        // arrange: images narrower than the width are cached as they are, so every variant has the source's size
+        Path a = image("a.png", 50, 50);
+        Path b = image("b.png", 50, 50);
+        Path c = image("c.png", 50, 50);
+        long size = Files.size(a);
+        cache = new ThumbnailCache(temp.resolve("cache").toString(), size * 2 + size / 2, new int[] { 100 }, 1, 4);
+
+        // act
+        Path thumbA = cache.thumbnail(a, 100).get();
+        Path thumbB = cache.thumbnail(b, 100).get();
+        cache.thumbnail(a, 100).get();
+        Path thumbC = cache.thumbnail(c, 100).get();
+
+        // assert
+        assertTrue(Files.exists(thumbA), "Because a was used after b.");
+        assertFalse(Files.exists(thumbB), "Because b was the least recently used when c pushed the cache over its limit.");
+        assertTrue(Files.exists(thumbC));
+    }
+
+    private Path image(String name, int width, int height) throws Exception
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x += 7)
+        {
+            image.setRGB(x, x % height, 0xff8800);
+        }
+        Path file = temp.resolve(name);
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private static List<Path> files(Path directory) throws Exception
+    {
+        try (Stream<Path> listing = Files.list(directory))
+        {
+            return listing.toList();
+        }
+    }
+}
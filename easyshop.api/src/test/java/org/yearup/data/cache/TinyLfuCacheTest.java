@@ -0,0 +1,107 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.CacheStats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TinyLfuCacheTest
+{
+    @Test
+    public void get_shouldLoadOnce_andThenHit()
+    {
+        // arrange
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100);
+        AtomicInteger loads = new AtomicInteger();
+
+        // act
+        cache.get(1, k -> { loads.incrementAndGet(); return "one"; });
+        String actual = cache.get(1, k -> { loads.incrementAndGet(); return "one"; });
+
+        // assert
+        CacheStats stats = cache.stats();
+        assertEquals("one", actual);
+        assertEquals(1, loads.get(), "Because the second read should be served from the cache.");
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    public void get_shouldNotCache_aValueLoadedBeforeItsKeyWasInvalidated()
+    {
+        // arrange
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100);
+
+        // act
+        String loaded = cache.get(1, k -> {
+            // the row changes while it is being read
+            cache.invalidate(1);
+            return "stale";
+        });
+
+        // assert
+        assertEquals("stale", loaded);
+        assertNull(cache.getIfPresent(1), "Because the value was read before the invalidation.");
+        assertTrue(cache.putIfNotInvalidated(1, "fresh", cache.stamp()));
+        assertEquals("fresh", cache.getIfPresent(1));
+    }
+
+    @Test
+    public void put_shouldNeverExceed_theMaximumSize()
+    {
+        // arrange
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(50);
+
+        // act
+        for (int i = 0; i < 1_000; i++)
+        {
+            cache.put(i, i);
+        }
+
+        // assert
+        assertEquals(50, cache.size());
+        assertEquals(950, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void frequentlyUsedEntries_shouldSurvive_aScan()
+    {
+        // arrange
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        for (int round = 0; round < 10; round++)
+        {
+            for (int hot = 0; hot < 20; hot++)
+            {
+                cache.get(hot, k -> k);
+            }
+        }
+
+        // act - a one-off scan over many cold keys
+        for (int cold = 1_000; cold < 1_500; cold++)
+        {
+            cache.get(cold, k -> k);
+        }
+
+        // assert
+        for (int hot = 0; hot < 20; hot++)
+        {
+            assertNotNull(cache.getIfPresent(hot), "Because hot key " + hot + " is used far more often than the scanned keys.");
+        }
+    }
+
+    @Test
+    public void invalidate_shouldRemoveTheEntry()
+    {
+        // arrange
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(10);
+        cache.put(7, "seven");
+
+        // act
+        cache.invalidate(7);
+
+        // assert
+        assertNull(cache.getIfPresent(7));
+    }
+}
@@ -0,0 +1,56 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CatalogVersion;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.CacheStats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedQueryCacheTest
+{
+    @Test
+    public void get_shouldReload_afterAWriteAdvancesTheCatalogVersion()
+    {
+        // arrange
+        CatalogVersion version = new CatalogVersion();
+        VersionedQueryCache<String, String> cache = new VersionedQueryCache<>(10, version);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("cat=1", key -> "result " + loads.incrementAndGet());
+        String tagBefore = version.tag();
+
+        // act
+        String cached = cache.get("cat=1", key -> "result " + loads.incrementAndGet());
+        version.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 1, null));
+        String reloaded = cache.get("cat=1", key -> "result " + loads.incrementAndGet());
+
+        // assert
+        assertEquals("result 1", cached);
+        assertEquals("result 2", reloaded, "Because the write made the cached result stale.");
+        assertNotEquals(tagBefore, version.tag());
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses(), "Because a stale hit counts as a miss.");
+    }
+
+    @Test
+    public void get_shouldNotKeepAResult_thatAWriteOvertookWhileItWasComputed()
+    {
+        // arrange
+        CatalogVersion version = new CatalogVersion();
+        VersionedQueryCache<String, String> cache = new VersionedQueryCache<>(10, version);
+        AtomicInteger loads = new AtomicInteger();
+
+        // act
+        cache.get("cat=1", key -> {
+            version.advance();
+            return "result " + loads.incrementAndGet();
+        });
+        String actual = cache.get("cat=1", key -> "result " + loads.incrementAndGet());
+
+        // assert
+        assertEquals("result 2", actual);
+    }
+}
@@ -0,0 +1,127 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartJournalTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    public void recover_shouldReadTheSnapshot_andReplayTheSegmentsAfterIt() throws IOException
+    {
+        // arrange
+        CartJournal journal = journal();
+        journal.lineSet(1, 10, 2);
+        journal.lineSet(1, 11, 1);
+        journal.lineSet(2, 10, 5);
+        journal.snapshot();
+        // small segments, so these span several files
+        for (int quantity = 1; quantity <= 20; quantity++)
+        {
+            journal.lineSet(3, 30, quantity);
+        }
+        journal.lineRemoved(1, 11);
+        journal.cartCleared(2);
+        journal.close();
+
+        // act
+        Map<Integer, Map<Integer, Integer>> actual = recover();
+
+        // assert
+        assertEquals(Map.of(1, Map.of(10, 2), 3, Map.of(30, 20)), actual);
+    }
+
+    @Test
+    public void recover_shouldStopAtATornRecord() throws IOException
+    {
+        // arrange
+        CartJournal journal = journal();
+        journal.lineSet(1, 10, 2);
+        journal.lineSet(1, 10, 3);
+        journal.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory))
+        {
+            segment = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw"))
+        {
+            // the last byte of the second record's checksum
+            file.seek(2 * 17 - 1);
+            int last = file.read();
+            file.seek(2 * 17 - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        // act
+        Map<Integer, Map<Integer, Integer>> actual = recover();
+
+        // assert
+        assertEquals(Map.of(1, Map.of(10, 2)), actual, "Because the change after the torn record never reached disk.");
+    }
+
+    @Test
+    public void recover_shouldKeepEveryChange_forcedOneByOneFromSeveralThreads() throws Exception
+    {
+        // arrange: fsync after every change, and segments small enough to rotate while others append
+        CartJournal journal = new CartJournal(directory.toString(), 17 * 4, 0, 3600);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+
+        // act
+        for (int user = 1; user <= 4; user++)
+        {
+            int userId = user;
+            writers.add(threads.submit(() -> {
+                for (int quantity = 1; quantity <= 50; quantity++)
+                {
+                    journal.lineSet(userId, 10, quantity);
+                }
+            }));
+        }
+        for (Future<?> writer : writers)
+        {
+            writer.get();
+        }
+        threads.shutdown();
+        journal.close();
+
+        // assert
+        assertEquals(Map.of(1, Map.of(10, 50), 2, Map.of(10, 50), 3, Map.of(10, 50), 4, Map.of(10, 50)), recover());
+    }
+
+    private CartJournal journal() throws IOException
+    {
+        return new CartJournal(directory.toString(), 17 * 4, 100, 3600);
+    }
+
+    private Map<Integer, Map<Integer, Integer>> recover() throws IOException
+    {
+        CartJournal journal = journal();
+        Map<Integer, Map<Integer, Integer>> carts = new HashMap<>();
+        journal.recover((userId, lines) -> {
+            Map<Integer, Integer> copy = new HashMap<>();
+            lines.forEach(copy::put);
+            carts.put(userId, copy);
+        });
+        journal.close();
+        return carts;
+    }
+}
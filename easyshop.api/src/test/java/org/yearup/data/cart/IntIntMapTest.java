@@ -0,0 +1,47 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIntMapTest
+{
+    @Test
+    public void operations_shouldMatchHashMap()
+    {
+        // arrange
+        IntIntMap actual = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // act
+        for (int i = 0; i < 100_000; i++)
+        {
+            // a small key range forces collisions, removals in the middle of probe runs and key 0
+            int key = random.nextInt(64);
+            switch (random.nextInt(3))
+            {
+                case 0 -> {
+                    actual.put(key, i);
+                    expected.put(key, i);
+                }
+                case 1 -> assertEquals(expected.merge(key, 1, Integer::sum), actual.addTo(key, 1));
+                default -> assertEquals(expected.remove(key) != null, actual.remove(key));
+            }
+        }
+
+        // assert
+        assertEquals(expected.size(), actual.size());
+        for (int key = 0; key < 64; key++)
+        {
+            assertEquals(expected.getOrDefault(key, -1), actual.get(key, -1), "key " + key);
+        }
+        Map<Integer, Integer> copied = new HashMap<>();
+        actual.copy().forEach(copied::put);
+        assertEquals(expected, copied);
+    }
+}
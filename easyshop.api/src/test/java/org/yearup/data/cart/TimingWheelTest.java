@@ -0,0 +1,67 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest
+{
+    @Test
+    public void advance_shouldFireEveryTimerWithinATickAfterItsDeadline()
+    {
+        // arrange
+        long tick = 10;
+        long now = 1_000_003;
+        TimingWheel<Long> wheel = new TimingWheel<>(tick, 3, now);
+        Random random = new Random(42);
+        Map<Long, TimingWheel.Timer<Long>> timers = new HashMap<>();
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long id = 0; id < 5_000; id++)
+        {
+            TimingWheel.Timer<Long> timer = wheel.newTimer(id);
+            // up to past the top level (64^3 ticks), so some wait there and are placed again
+            long deadline = now + random.nextInt(3_000_000);
+            wheel.schedule(timer, deadline);
+            timers.put(id, timer);
+            deadlines.put(id, deadline);
+        }
+        // rescheduling replaces the deadline, cancelling drops the timer
+        wheel.schedule(timers.get(0L), now + 5);
+        deadlines.put(0L, now + 5);
+        wheel.cancel(timers.get(1L));
+        deadlines.remove(1L);
+
+        // act
+        Map<Long, long[]> fired = new HashMap<>();
+        List<Long> order = new ArrayList<>();
+        while (wheel.size() > 0)
+        {
+            long before = now;
+            now += random.nextInt(5_000);
+            long at = now;
+            wheel.advance(now, id -> {
+                fired.put(id, new long[] { before, at });
+                order.add(id);
+            });
+        }
+
+        // assert
+        assertEquals(4_999, fired.size());
+        assertFalse(fired.containsKey(1L));
+        assertEquals(0L, order.get(0));
+        for (Map.Entry<Long, Long> deadline : deadlines.entrySet())
+        {
+            // the tick a timer fires on is the first one at or after its deadline
+            long firingTick = (deadline.getValue() + tick - 1) / tick * tick;
+            long[] window = fired.get(deadline.getKey());
+            assertTrue(firingTick > window[0] && firingTick <= window[1],
+                    "timer " + deadline.getKey() + " fired outside its tick");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks how a rejected batch is replayed without a database.
+ */
+class MySqlCartWriteBehindTest
+{
+    private static final String UPSERT = "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?)";
+
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+    }
+
+    @Test
+    public void executeBatch_shouldReplayARejectedBatch_andDropOnlyTheFailingRow() throws Exception
+    {
+        // arrange: the rewritten multi-row statement fails as a whole, then only product 99 fails on its own
+        when(statement.executeBatch()).thenThrow(new BatchUpdateException("foreign key", "23000", new int[0]));
+        int[] product = new int[1];
+        doAnswer(call -> product[0] = call.getArgument(1)).when(statement).setInt(eq(2), anyInt());
+        when(statement.executeUpdate()).thenAnswer(call -> {
+            if (product[0] == 99)
+                throw new SQLException("foreign key", "23000");
+            return 1;
+        });
+
+        // act
+        MySqlCartWriteBehind.executeBatch(connection, UPSERT,
+                List.of(new int[] { 1, 10, 2 }, new int[] { 1, 99, 1 }, new int[] { 2, 10, 5 }), "cart lines");
+
+        // assert
+        verify(statement, times(3)).executeUpdate();
+        verify(statement, times(2)).setInt(3, 5); // once for the batch, once more for the replay after the failing row
+    }
+
+    @Test
+    public void executeBatch_shouldRethrow_aLostConnection() throws Exception
+    {
+        // arrange
+        when(statement.executeBatch()).thenThrow(new BatchUpdateException("gone", "08S01", new int[0]));
+
+        // act
+        SQLException thrown = assertThrows(SQLException.class, () -> MySqlCartWriteBehind.executeBatch(connection,
+                UPSERT, List.<int[]>of(new int[] { 1, 10, 2 }), "cart lines"));
+
+        // assert
+        assertEquals("08S01", thrown.getSQLState(), "Because a lost connection is retried with the whole batch.");
+        verify(statement, never()).executeUpdate();
+    }
+
+    @Test
+    public void executeBatch_shouldRethrow_aConnectionLostDuringTheReplay() throws Exception
+    {
+        // arrange
+        when(statement.executeBatch()).thenThrow(new BatchUpdateException("foreign key", "23000", new int[0]));
+        when(statement.executeUpdate()).thenThrow(new SQLException("gone", "08S01"));
+
+        // act
+        SQLException thrown = assertThrows(SQLException.class, () -> MySqlCartWriteBehind.executeBatch(connection,
+                UPSERT, List.of(new int[] { 1, 10, 2 }, new int[] { 1, 11, 2 }), "cart lines"));
+
+        // assert
+        assertEquals("08S01", thrown.getSQLState());
+        verify(statement, times(1)).executeUpdate();
+    }
+}
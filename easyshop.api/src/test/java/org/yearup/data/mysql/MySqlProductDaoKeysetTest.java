@@ -0,0 +1,111 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.yearup.data.ProductCursor;
+import org.yearup.data.ProductQuery;
+import org.yearup.data.ProductSort;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the keyset SQL without a database; MySqlProductDaoTest runs it against one.
+ */
+class MySqlProductDaoKeysetTest
+{
+    private Connection connection;
+    private PreparedStatement statement;
+    private MySqlProductDao dao;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        DataSource dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        ResultSet empty = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(empty);
+        dao = new MySqlProductDao(dataSource);
+    }
+
+    @Test
+    public void search_shouldSeekOnTheBinaryName_andOrderTheSameWay() throws Exception
+    {
+        // act
+        String sql = search(ProductSort.NAME, false, "apple", 4);
+
+        // assert
+        assertTrue(sql.endsWith(" AND (name_binary > ? OR (name_binary = ? AND product_id > ?))"
+                + " ORDER BY name_binary ASC, product_id ASC LIMIT ?"), sql);
+        verify(statement).setString(1, "apple");
+        verify(statement).setString(2, "apple");
+        verify(statement).setInt(3, 4);
+        verify(statement).setInt(4, 10);
+    }
+
+    @Test
+    public void search_shouldKeepNullPrices_afterADescendingCursor() throws Exception
+    {
+        // act
+        String sql = search(ProductSort.PRICE, true, "9.50", 4);
+
+        // assert
+        assertTrue(sql.endsWith(" AND (price < ? OR (price = ? AND product_id < ?) OR price IS NULL)"
+                + " ORDER BY price DESC, product_id DESC LIMIT ?"), "Because NULLs sort last descending. " + sql);
+        verify(statement).setBigDecimal(1, new BigDecimal("9.50"));
+        verify(statement).setBigDecimal(2, new BigDecimal("9.50"));
+        verify(statement).setInt(3, 4);
+    }
+
+    @Test
+    public void search_shouldSeekPastNulls_withANullCursorValue() throws Exception
+    {
+        // act
+        String ascending = search(ProductSort.NAME, false, null, 4);
+        String descending = search(ProductSort.NAME, true, null, 4);
+
+        // assert
+        assertTrue(ascending.contains(" AND (name_binary IS NOT NULL OR product_id > ?) ORDER BY"), ascending);
+        assertTrue(descending.contains(" AND (name_binary IS NULL AND product_id < ?) ORDER BY"), descending);
+        verify(statement, never()).setString(anyInt(), any());
+        verify(statement, times(2)).setInt(1, 4);
+    }
+
+    @Test
+    public void search_shouldSeekOnTheIdAlone_whenSortedById() throws Exception
+    {
+        // act
+        String sql = search(ProductSort.ID, false, "4", 4);
+
+        // assert
+        assertTrue(sql.endsWith(" AND product_id > ? ORDER BY product_id ASC LIMIT ?"), sql);
+        verify(statement).setInt(1, 4);
+    }
+
+    private String search(ProductSort sort, boolean descending, String lastValue, int lastProductId) throws Exception
+    {
+        ProductQuery query = new ProductQuery();
+        query.setSort(sort);
+        query.setDescending(descending);
+        query.setLimit(10);
+        query.setAfter(new ProductCursor(sort, descending, lastValue, lastProductId));
+        dao.search(query);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(connection, atLeastOnce()).prepareStatement(sql.capture(), anyInt(), anyInt());
+        return sql.getValue();
+    }
+}
@@ -4,12 +4,20 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.yearup.data.ProductChangedEvent;
 import org.yearup.models.Product;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 class MySqlProductDaoTest extends BaseDaoTestClass
@@ -47,6 +55,63 @@ class MySqlProductDaoTest extends BaseDaoTestClass
         assertEquals(expected.getPrice(), actual.getPrice(), "Because I tried to get product 1 from the database.");
     }
 
+    @Test
+    public void getByIds_shouldKeepTheRequestedOrder_acrossChunks()
+    {
+        // arrange: more ids than one IN (...) chunk holds, most of them missing, with a duplicate
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1200; id >= 3; id--)
+        {
+            ids.add(id);
+        }
+        ids.add(1);
+        ids.add(3);
+
+        // act
+        List<Product> actual = dao.getByIds(ids);
+
+        // assert
+        List<Integer> actualIds = actual.stream().map(Product::getProductId).toList();
+        assertEquals(actualIds.size(), new HashSet<>(actualIds).size(), "Because duplicate ids are read once.");
+        assertEquals(1, actualIds.get(actualIds.size() - 1), "Because 1 was asked for last.");
+        assertTrue(actualIds.indexOf(3) < actualIds.indexOf(1));
+    }
+
+    @Test
+    public void update_shouldPublishTheStoredRow_notTheRequestBody()
+    {
+        // arrange
+        List<Object> events = new ArrayList<>();
+        MySqlProductDao publishing = new MySqlProductDao(dataSource, events::add, 0);
+        Product product = dao.getById(1);
+        product.setPrice(new BigDecimal("19.999"));
+
+        // act
+        publishing.update(1, product);
+
+        // assert
+        ProductChangedEvent event = (ProductChangedEvent) events.get(0);
+        assertEquals(new BigDecimal("20.00"), event.getProduct().getPrice(), "Because MySQL rounds the price to DECIMAL(10,2).");
+    }
+
+    @Test
+    public void delete_shouldRemoveTheProduct_evenWhenItIsInACart() throws SQLException
+    {
+        // arrange
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (1, 1, 2)"))
+        {
+            statement.executeUpdate();
+        }
+
+        // act
+        dao.delete(1);
+
+        // assert
+        assertNull(dao.getById(1), "Because the cart line referencing product 1 is deleted with it.");
+    }
+
     public void searchProductByMinMaxPrice_shouldReturn_theCorrectProduct(){
 
     }
@@ -0,0 +1,40 @@
+package org.yearup.data.search;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.CategorySummary;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategorySummaryIndexTest
+{
+    @Test
+    public void apply_shouldKeepCountsAndPriceRange_current()
+    {
+        // arrange
+        CategorySummaryIndex index = new CategorySummaryIndex();
+        index.rebuild(List.of(product(1, 1, "5.00", 0), product(2, 1, "20.00", 3), product(3, 2, "7.50", 1)));
+
+        // act
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 1, null));
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 3, product(3, 1, "12.00", 1)));
+        CategorySummary actual = index.summary(1);
+
+        // assert
+        assertEquals(2, actual.getProductCount());
+        assertEquals(2, actual.getInStockCount());
+        assertEquals(new BigDecimal("12.00"), actual.getMinPrice(), "Because the 5.00 product was deleted.");
+        assertEquals(new BigDecimal("20.00"), actual.getMaxPrice());
+        assertEquals(0, index.summary(2).getProductCount(), "Because product 3 moved to category 1.");
+        assertNull(index.summary(2).getMinPrice());
+    }
+
+    private static Product product(int id, int categoryId, String price, int stock)
+    {
+        return new Product(id, "Product " + id, new BigDecimal(price), categoryId, "", "", stock, false, "");
+    }
+}
@@ -0,0 +1,106 @@
+package org.yearup.data.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+import org.yearup.models.ProductFacets;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductFacetIndexTest
+{
+    private ProductFacetIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductFacetIndex(new BigDecimal[]{new BigDecimal("25"), new BigDecimal("100")});
+        index.rebuild(List.of(
+                product(1, 1, "Red", "10.00"),
+                product(2, 1, "Blue", "30.00"),
+                product(3, 2, "red", "30.00"),
+                product(4, 2, "Blue", "150.00")
+        ));
+    }
+
+    @Test
+    public void facets_shouldCountEachFacet_withTheOtherFiltersApplied()
+    {
+        // act
+        ProductFacets facets = index.facets(1, null, null, "red");
+
+        // assert
+        assertEquals(1, facets.getTotal());
+        assertEquals(1, facets.getCategories().get(1), "Because the category facet ignores the category filter.");
+        assertEquals(1, facets.getCategories().get(2));
+        assertEquals(1, facets.getColors().get("Red"), "Because the color facet ignores the color filter.");
+        assertEquals(1, facets.getColors().get("Blue"));
+    }
+
+    @Test
+    public void facets_shouldCountExactly_whenThePriceRangeCutsABand()
+    {
+        // act
+        ProductFacets facets = index.facets(null, new BigDecimal("20"), new BigDecimal("30"), null);
+
+        // assert
+        assertEquals(2, facets.getTotal());
+        assertEquals(1, facets.getPrices().get(0).getCount(), "Because price bands ignore the price filter.");
+        assertEquals(2, facets.getPrices().get(1).getCount());
+        assertEquals(1, facets.getPrices().get(2).getCount());
+    }
+
+    @Test
+    public void apply_shouldMoveTheProduct_toItsNewCounts()
+    {
+        // act
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 4, product(4, 1, "Green", "150.00")));
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 2, null));
+
+        // assert
+        ProductFacets facets = index.facets(null, null, null, null);
+        assertEquals(3, facets.getTotal());
+        assertEquals(2, facets.getCategories().get(1));
+        assertEquals(1, facets.getCategories().get(2));
+        assertNull(facets.getColors().get("Blue"));
+        assertEquals(1, facets.getColors().get("Green"));
+    }
+
+    @Test
+    public void facets_shouldClampPriceBoundsBeyondALong_insteadOfFailing()
+    {
+        // act
+        ProductFacets everything = index.facets(null, new BigDecimal("-1e30"), new BigDecimal("1e30"), null);
+        ProductFacets nothing = index.facets(null, new BigDecimal("1e30"), null, null);
+        ProductFacets crossed = index.facets(null, new BigDecimal("20"), new BigDecimal("15"), null);
+
+        // assert
+        assertEquals(4, everything.getTotal());
+        assertEquals(0, nothing.getTotal());
+        assertEquals(0, crossed.getTotal(), "Because a minimum above the maximum matches nothing, like the SQL.");
+    }
+
+    @Test
+    public void facets_shouldMatchColors_likeMySql()
+    {
+        // arrange
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.CREATED, 5, product(5, 1, " Red", "10.00")));
+
+        // act
+        ProductFacets trailing = index.facets(null, null, null, "RED  ");
+        ProductFacets leading = index.facets(null, null, null, " red");
+
+        // assert
+        assertEquals(2, trailing.getTotal(), "Because MySQL ignores trailing spaces and case.");
+        assertEquals(1, leading.getTotal(), "Because MySQL does not ignore leading spaces.");
+    }
+
+    private static Product product(int id, int categoryId, String color, String price)
+    {
+        return new Product(id, "product " + id, new BigDecimal(price), categoryId, "", color, 1, false, "");
+    }
+}
@@ -0,0 +1,70 @@
+package org.yearup.data.search;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.data.ProductsCreatedEvent;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductIndexMaintainerTest
+{
+    @Test
+    public void rebuild_shouldReplayWrites_thatLandedAfterTheProductsWereRead()
+    {
+        // arrange
+        ProductSearchIndex index = new ProductSearchIndex();
+        ProductIndexMaintainer maintainer = maintainer(index);
+        maintainer.beginRebuild();
+        List<Product> snapshot = List.of(product(1, "10.00"), product(2, "20.00"));
+
+        // act: writes committed after the read, while the index is still being built
+        maintainer.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 1, product(1, "99.00")));
+        maintainer.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 2, null));
+        maintainer.onProductsCreated(new ProductsCreatedEvent(List.of(product(3, "30.00"))));
+        maintainer.rebuild(index, snapshot);
+
+        // assert
+        List<Product> actual = index.search(null, null, null, null);
+        assertEquals(List.of(1, 3), actual.stream().map(Product::getProductId).toList());
+        assertEquals(new BigDecimal("99.00"), actual.get(0).getPrice(), "Because the update was replayed over the stale row.");
+    }
+
+    @Test
+    public void onProductChanged_shouldApplyStraightAway_onceTheIndexIsBuilt()
+    {
+        // arrange
+        ProductSearchIndex built = new ProductSearchIndex();
+        ProductSearchIndex failed = new ProductSearchIndex();
+        ProductIndexMaintainer maintainer = maintainer(built, failed);
+        maintainer.beginRebuild();
+        maintainer.rebuild(built, List.of(product(1, "10.00")));
+        maintainer.endRebuild();
+
+        // act
+        maintainer.onProductChanged(new ProductChangedEvent(ProductChangedEvent.Type.CREATED, 2, product(2, "5.00")));
+
+        // assert
+        assertEquals(2, built.size());
+        assertFalse(failed.isReady(), "Because an index whose build never ran stays not ready.");
+    }
+
+    private static ProductIndexMaintainer maintainer(ProductIndex... indexes)
+    {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        for (int i = 0; i < indexes.length; i++)
+        {
+            beans.addBean("index" + i, indexes[i]);
+        }
+        return new ProductIndexMaintainer(beans.getBeanProvider(ProductIndex.class));
+    }
+
+    private static Product product(int id, String price)
+    {
+        return new Product(id, "Product " + id, new BigDecimal(price), 1, "", "Red", 1, false, "");
+    }
+}
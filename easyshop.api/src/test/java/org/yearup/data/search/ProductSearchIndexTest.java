@@ -0,0 +1,154 @@
+package org.yearup.data.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest
+{
+    private static final String[] COLORS = { "Red", "red", "Blue", "Green  ", null };
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductSearchIndex();
+        index.rebuild(List.of(
+                product(3, 1, "Red", "10.00"),
+                product(1, 2, "Blue", "25.50"),
+                product(2, 1, "red ", "25.49"),
+                product(4, 1, "Blue", "100.00")
+        ));
+    }
+
+    @Test
+    public void search_shouldCombineFilters_likeTheSqlWhereClause()
+    {
+        // act
+        List<Product> actual = index.search(1, new BigDecimal("10"), new BigDecimal("25.49"), "RED");
+
+        // assert
+        assertEquals(List.of(2, 3), ids(actual), "Because colors compare case-insensitively, the bounds are inclusive and rows come in id order.");
+    }
+
+    @Test
+    public void search_shouldClampPricesBeyondALong_insteadOfFailing()
+    {
+        // act
+        List<Product> everything = index.search(null, new BigDecimal("-1e30"), new BigDecimal("1e30"), null);
+        List<Product> nothing = index.search(null, new BigDecimal("1e30"), null, null);
+
+        // assert
+        assertEquals(List.of(1, 2, 3, 4), ids(everything));
+        assertTrue(nothing.isEmpty());
+    }
+
+    @Test
+    public void apply_shouldReflectUpdatesAndDeletes_inIdOrder()
+    {
+        // act
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 4, product(4, 2, "Blue", "5.00")));
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 1, null));
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.CREATED, 0, product(0, 1, "Blue", "7.00")));
+
+        // assert
+        assertEquals(List.of(0, 2, 3, 4), ids(index.search(null, null, null, null)));
+        assertEquals(List.of(0, 4), ids(index.search(null, null, new BigDecimal("9.99"), "blue")));
+        assertEquals(List.of(0, 2, 3), ids(index.search(1, null, null, null)), "Because product 4 moved to category 2.");
+    }
+
+    @Test
+    public void search_shouldMatchAReferenceFilter_throughRandomWrites()
+    {
+        // arrange
+        Random random = new Random(7);
+        Map<Integer, Product> expected = new TreeMap<>();
+        List<Product> initial = new ArrayList<>();
+        for (int id = 1; id <= 300; id++)
+        {
+            Product product = randomProduct(random, id);
+            initial.add(product);
+            expected.put(id, product);
+        }
+        index.rebuild(initial);
+
+        for (int step = 0; step < 3_000; step++)
+        {
+            // act
+            int id = 1 + random.nextInt(400);
+            if (random.nextInt(4) == 0)
+            {
+                expected.remove(id);
+                index.apply(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, id, null));
+            }
+            else
+            {
+                Product product = randomProduct(random, id);
+                expected.put(id, product);
+                index.apply(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, id, product));
+            }
+
+            Integer categoryId = random.nextBoolean() ? 1 + random.nextInt(3) : null;
+            BigDecimal min = random.nextBoolean() ? price(random) : null;
+            BigDecimal max = random.nextBoolean() ? price(random) : null;
+            String color = random.nextBoolean() ? COLORS[random.nextInt(COLORS.length - 1)] : null;
+
+            // assert
+            assertEquals(ids(where(expected, categoryId, min, max, color)), ids(index.search(categoryId, min, max, color)),
+                    "step " + step);
+        }
+    }
+
+    // category_id = ? AND price >= ? AND price <= ? AND color = ? under a case-insensitive, PAD SPACE collation,
+    // in primary key order
+    private static List<Product> where(Map<Integer, Product> table, Integer categoryId, BigDecimal min, BigDecimal max, String color)
+    {
+        return table.values().stream()
+                .filter(p -> categoryId == null || p.getCategoryId() == categoryId)
+                .filter(p -> min == null || p.getPrice().compareTo(min) >= 0)
+                .filter(p -> max == null || p.getPrice().compareTo(max) <= 0)
+                .filter(p -> color == null || (p.getColor() != null && collate(p.getColor()).equals(collate(color))))
+                .sorted(Comparator.comparingInt(Product::getProductId))
+                .toList();
+    }
+
+    private static String collate(String value)
+    {
+        return value.stripTrailing().toLowerCase(Locale.ROOT);
+    }
+
+    private static Product randomProduct(Random random, int id)
+    {
+        Product product = product(id, 1 + random.nextInt(3), COLORS[random.nextInt(COLORS.length)], "0");
+        product.setPrice(price(random));
+        return product;
+    }
+
+    private static BigDecimal price(Random random)
+    {
+        return BigDecimal.valueOf(random.nextInt(20_000), 2);
+    }
+
+    private static List<Integer> ids(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).toList();
+    }
+
+    private static Product product(int id, int categoryId, String color, String price)
+    {
+        return new Product(id, "Product " + id, new BigDecimal(price), categoryId, "", color, 1, false, "");
+    }
+}
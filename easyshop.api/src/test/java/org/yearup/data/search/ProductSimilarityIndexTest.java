@@ -0,0 +1,41 @@
+package org.yearup.data.search;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSimilarityIndexTest
+{
+    @Test
+    public void similarTo_shouldFindNearDuplicates_andForgetDeletedProducts()
+    {
+        // arrange
+        ProductSimilarityIndex index = new ProductSimilarityIndex(64);
+        index.rebuild(List.of(
+                product(1, "Trail Running Shoes", "Lightweight trail running shoes with a grippy sole for muddy paths."),
+                product(2, "Trail Running Shoes Pro", "Lightweight trail running shoes with a grippy sole for rocky paths."),
+                product(3, "Ceramic Coffee Mug", "Holds twelve ounces of coffee and is dishwasher safe.")
+        ));
+
+        // act
+        List<ProductSimilarityIndex.Match> actual = index.similarTo(1, 10);
+
+        // assert
+        assertEquals(1, actual.size());
+        assertEquals(2, actual.get(0).productId());
+
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.DELETED, 2, null));
+        assertTrue(index.similarTo(1, 10).isEmpty());
+        assertNull(index.similarTo(2, 10));
+    }
+
+    private static Product product(int id, String name, String description)
+    {
+        return new Product(id, name, BigDecimal.ONE, 1, description, "Black", 1, false, "");
+    }
+}
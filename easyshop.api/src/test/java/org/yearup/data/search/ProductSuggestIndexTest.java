@@ -0,0 +1,99 @@
+package org.yearup.data.search;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+import org.yearup.models.ProductSuggestion;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSuggestIndexTest
+{
+    @Test
+    public void suggest_shouldMatchAnyWord_andRankByPopularity()
+    {
+        // arrange
+        ProductPopularity popularity = new ProductPopularity();
+        ProductSuggestIndex index = new ProductSuggestIndex(popularity, 10);
+        index.rebuild(List.of(product(1, "Running Shoes"), product(2, "Shoe Polish"), product(3, "Sun Hat")));
+        popularity.recordAddToCart(1);
+        index.refresh();
+
+        // act
+        List<ProductSuggestion> actual = index.suggest("SHO", 10);
+
+        // assert
+        assertEquals(2, actual.size());
+        assertEquals(1, actual.get(0).getProductId(), "Because product 1 has been added to a cart and product 2 has not.");
+        assertEquals(2, actual.get(1).getProductId());
+        assertTrue(index.suggest("shoes r", 10).isEmpty());
+    }
+
+    @Test
+    public void refresh_shouldReRankInPlace_likeAFullRebuild()
+    {
+        // arrange
+        String[] words = { "red", "running", "rain", "shoe", "shorts", "sun", "hat", "hand" };
+        Random random = new Random(11);
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= 200; id++)
+        {
+            products.add(product(id, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]));
+        }
+        ProductPopularity popularity = new ProductPopularity();
+        ProductSuggestIndex index = new ProductSuggestIndex(popularity, 3);
+        index.rebuild(products);
+
+        for (int round = 0; round < 50; round++)
+        {
+            // act
+            for (int i = 0; i < 5; i++)
+            {
+                popularity.recordAddToCart(1 + random.nextInt(200));
+            }
+            index.refresh();
+
+            // assert
+            ProductSuggestIndex rebuilt = new ProductSuggestIndex(popularity, 3);
+            rebuilt.rebuild(products);
+            for (String prefix : new String[] { "r", "ru", "s", "sh", "sho", "h", "ha", "red s", "sun h" })
+            {
+                assertEquals(ids(rebuilt.suggest(prefix, 3)), ids(index.suggest(prefix, 3)),
+                        "round " + round + ", prefix '" + prefix + "'");
+            }
+        }
+    }
+
+    @Test
+    public void refresh_shouldLetAProductClimbIntoAFullList()
+    {
+        // arrange
+        ProductPopularity popularity = new ProductPopularity();
+        ProductSuggestIndex index = new ProductSuggestIndex(popularity, 1);
+        index.rebuild(List.of(product(1, "Running Shoes"), product(2, "Shoe Polish")));
+
+        // act
+        List<ProductSuggestion> before = index.suggest("sho", 1);
+        popularity.recordAddToCart(2);
+        index.refresh();
+        List<ProductSuggestion> after = index.suggest("sho", 1);
+
+        // assert
+        assertEquals(1, before.get(0).getProductId(), "Because ties are broken by name.");
+        assertEquals(2, after.get(0).getProductId(), "Because product 2 was added to a cart and now outranks product 1.");
+    }
+
+    private static List<Integer> ids(List<ProductSuggestion> suggestions)
+    {
+        return suggestions.stream().map(ProductSuggestion::getProductId).toList();
+    }
+
+    private static Product product(int id, String name)
+    {
+        return new Product(id, name, BigDecimal.ONE, 1, "", "", 1, false, "");
+    }
+}
@@ -0,0 +1,118 @@
+package org.yearup.data.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductChangedEvent;
+import org.yearup.data.ProductQuery;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductTextIndexTest
+{
+    private ProductTextIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductTextIndex(100);
+        index.rebuild(List.of(
+                product(1, 1, "Running Shoes", "Light shoes for long runs.", "50.00"),
+                product(2, 1, "Leather Boots", "Boots that go with running shorts.", "120.00"),
+                product(3, 2, "Coffee Mug", "A mug for coffee.", "10.00")
+        ));
+    }
+
+    @Test
+    public void search_shouldRankNameMatches_aboveDescriptionMatches()
+    {
+        // act
+        List<Product> actual = index.search(query("running"));
+
+        // assert
+        assertEquals(2, actual.size());
+        assertEquals(1, actual.get(0).getProductId(), "Because the term is in the name of product 1 but only the description of product 2.");
+    }
+
+    @Test
+    public void search_shouldApplyTheFilters_andTheLimit()
+    {
+        // arrange
+        ProductQuery query = query("running mug");
+        query.setMaxPrice(new BigDecimal("100"));
+        query.setLimit(1);
+
+        // act
+        List<Product> actual = index.search(query);
+
+        // assert
+        assertEquals(1, actual.size());
+        assertNotEquals(2, actual.get(0).getProductId(), "Because product 2 costs more than maxPrice.");
+    }
+
+    @Test
+    public void apply_shouldReplaceTheIndexedText()
+    {
+        // act
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.UPDATED, 3, product(3, 2, "Tea Cup", "A cup for tea.", "10.00")));
+
+        // assert
+        assertTrue(index.search(query("coffee")).isEmpty());
+        assertEquals(3, index.search(query("tea")).get(0).getProductId());
+    }
+
+    @Test
+    public void search_shouldClampPriceBoundsBeyondALong_insteadOfFailing()
+    {
+        // arrange
+        ProductQuery everything = query("running");
+        everything.setMinPrice(new BigDecimal("-1e30"));
+        everything.setMaxPrice(new BigDecimal("1e30"));
+        ProductQuery nothing = query("running");
+        nothing.setMinPrice(new BigDecimal("1e30"));
+
+        // act
+        List<Product> all = index.search(everything);
+        List<Product> none = index.search(nothing);
+
+        // assert
+        assertEquals(2, all.size());
+        assertTrue(none.isEmpty());
+    }
+
+    @Test
+    public void search_shouldMatchColors_likeMySql()
+    {
+        // arrange
+        Product leading = product(4, 1, "Trail Running Shoes", "", "60.00");
+        leading.setColor(" Red");
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.CREATED, 4, leading));
+        Product trailing = product(5, 1, "Road Running Shoes", "", "60.00");
+        trailing.setColor("Red  ");
+        index.apply(new ProductChangedEvent(ProductChangedEvent.Type.CREATED, 5, trailing));
+        ProductQuery query = query("running");
+        query.setColor("RED");
+
+        // act
+        List<Product> actual = index.search(query);
+
+        // assert
+        assertEquals(List.of(5), actual.stream().map(Product::getProductId).toList(),
+                "Because MySQL ignores trailing spaces and case, but not leading spaces.");
+    }
+
+    private static ProductQuery query(String text)
+    {
+        ProductQuery query = new ProductQuery();
+        query.setText(text);
+        return query;
+    }
+
+    private static Product product(int id, int categoryId, String name, String description, String price)
+    {
+        return new Product(id, name, new BigDecimal(price), categoryId, description, "", 1, false, "");
+    }
+}
@@ -38,7 +38,10 @@ CREATE TABLE products (
                           image_url VARCHAR(200),
                           stock INT NOT NULL DEFAULT 0,
                           featured BOOL NOT NULL DEFAULT 0,
+                          name_binary VARBINARY(400) GENERATED ALWAYS AS (CAST(name AS BINARY)) VIRTUAL,
                           PRIMARY KEY (product_id),
+                          INDEX idx_products_price (price, product_id),
+                          INDEX idx_products_name (name_binary, product_id),
                           FOREIGN KEY (category_id) REFERENCES categories(category_id)
 );
 